@@ -0,0 +1,55 @@
+package loadingbg.javason.benchmarks;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import loadingbg.javason.*;
+import org.openjdk.jmh.annotations.*;
+
+// The reflective paths: binding the RECORDS corpus to records and serializing them back.
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class BindingBenchmark {
+    public record Address(@JSONField("street") String street, @JSONField("city") String city,
+                          @JSONField("zip") String zip) {}
+
+    public record Item(@JSONField("id") long id, @JSONField("name") String name, @JSONField("email") String email,
+                       @JSONField("active") boolean active, @JSONField("score") double score,
+                       @JSONField("tags") List<String> tags, @JSONField("address") Address address) {}
+
+    public record Catalog(@JSONField("items") List<Item> items) {}
+
+    @Param({ "SMALL", "MEDIUM", "HUGE" })
+    public Corpus.Size size;
+
+    private String json;
+    private Catalog catalog;
+    private final StringBuilder out = new StringBuilder();
+
+    @Setup
+    public void setUp() {
+        json = Corpus.RECORDS.generate(size);
+        catalog = JavaSON.parse(json, Catalog.class);
+    }
+
+    @Benchmark
+    public Catalog bind() {
+        return JavaSON.parse(json, Catalog.class);
+    }
+
+    @Benchmark
+    public JSONElement toJSON() {
+        return JavaSON.toJSON(catalog);
+    }
+
+    @Benchmark
+    public StringBuilder write() throws IOException {
+        out.setLength(0);
+        JavaSON.write(catalog, out);
+        return out;
+    }
+}
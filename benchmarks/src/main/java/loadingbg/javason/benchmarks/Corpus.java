@@ -0,0 +1,142 @@
+package loadingbg.javason.benchmarks;
+
+import java.util.*;
+
+// Generated documents for the benchmarks; a fixed seed makes every run measure the same bytes.
+//
+// Build and run (the library has to be installed first):
+//   mvn install
+//   mvn -f benchmarks/pom.xml package
+//   java --enable-preview -jar benchmarks/target/benchmarks.jar -prof gc -rf json -rff baseline.json
+// Every benchmark reports throughput and sampled latency (percentiles); -prof gc adds the allocation rate.
+// Narrow a run down with a regex and parameters, e.g. "ParseBenchmark -p shape=RECORDS -p size=HUGE", and add
+// -jvmArgsAppend --add-modules=jdk.incubator.vector to measure the vectorized scanner.
+public enum Corpus {
+    // {"items":[{...}, ...]}, an array of flat-ish objects that all have the same keys
+    RECORDS,
+    // {"values":[...]}, integers, decimals, exponents and integers too big for a long
+    NUMBERS,
+    // {"values":[...]}, strings with escapes and non-ASCII text among plain ones
+    STRINGS,
+    // [...], chains of objects and arrays nested a few hundred levels deep
+    NESTED;
+
+    public enum Size {
+        SMALL(1 << 10),
+        MEDIUM(1 << 17),
+        HUGE(1 << 24);
+
+        // the documents are at least this many chars long
+        final int chars;
+
+        Size(final int chars) {
+            this.chars = chars;
+        }
+    }
+
+    private static final String[] WORDS = {
+        "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel", "india", "juliett", "kilo", "lima"
+    };
+
+    public String generate(final Size size) {
+        final var random = new Random(42);
+        final var json = new StringBuilder(size.chars + 1024);
+        switch (this) {
+            case RECORDS -> {
+                json.append("{\"items\":[");
+                for (var idx = 0; json.length() < size.chars; idx++) {
+                    if (idx > 0) {
+                        json.append(',');
+                    }
+                    record(json, idx, random);
+                }
+                json.append("]}");
+            }
+            case NUMBERS -> {
+                json.append("{\"values\":[");
+                for (var idx = 0; json.length() < size.chars; idx++) {
+                    if (idx > 0) {
+                        json.append(',');
+                    }
+                    number(json, random);
+                }
+                json.append("]}");
+            }
+            case STRINGS -> {
+                json.append("{\"values\":[");
+                for (var idx = 0; json.length() < size.chars; idx++) {
+                    if (idx > 0) {
+                        json.append(',');
+                    }
+                    string(json, random);
+                }
+                json.append("]}");
+            }
+            case NESTED -> {
+                json.append('[');
+                for (var idx = 0; json.length() < size.chars; idx++) {
+                    if (idx > 0) {
+                        json.append(',');
+                    }
+                    nested(json, 100 + random.nextInt(400), random);
+                }
+                json.append(']');
+            }
+        }
+        return json.toString();
+    }
+
+    private static void record(final StringBuilder json, final int id, final Random random) {
+        final var first = WORDS[random.nextInt(WORDS.length)];
+        final var last = WORDS[random.nextInt(WORDS.length)];
+        json.append("{\"id\":").append(id)
+            .append(",\"name\":\"").append(first).append(' ').append(last).append('"')
+            .append(",\"email\":\"").append(first).append('.').append(last).append(id).append("@example.com\"")
+            .append(",\"active\":").append(random.nextBoolean())
+            .append(",\"score\":").append(random.nextInt(100_000) / 100.0)
+            .append(",\"tags\":[\"").append(WORDS[random.nextInt(WORDS.length)]).append("\",\"")
+            .append(WORDS[random.nextInt(WORDS.length)]).append("\"]")
+            .append(",\"address\":{\"street\":\"").append(random.nextInt(1000)).append(' ').append(last)
+            .append(" St\",\"city\":\"").append(WORDS[random.nextInt(WORDS.length)])
+            .append("\",\"zip\":\"").append(10_000 + random.nextInt(90_000)).append("\"}}");
+    }
+
+    private static void number(final StringBuilder json, final Random random) {
+        switch (random.nextInt(5)) {
+            case 0 -> json.append(random.nextInt(1000));
+            case 1 -> json.append(random.nextLong());
+            case 2 -> json.append(random.nextInt(1_000_000) / 1000.0);
+            case 3 -> json.append(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+            default -> json.append(random.nextLong() & Long.MAX_VALUE).append(random.nextInt(1_000_000));
+        }
+    }
+
+    private static void string(final StringBuilder json, final Random random) {
+        json.append('"');
+        final var words = 1 + random.nextInt(12);
+        for (var idx = 0; idx < words; idx++) {
+            if (idx > 0) {
+                json.append(' ');
+            }
+            json.append(WORDS[random.nextInt(WORDS.length)]);
+            switch (random.nextInt(10)) {
+                case 0 -> json.append("\\n");
+                case 1 -> json.append("\\\"quoted\\\"");
+                case 2 -> json.append("\\u00e9t\\u00e9");
+                case 3 -> json.append(" \u00fcber \u4e2d\u6587 \ud83d\ude00");
+                default -> {}
+            }
+        }
+        json.append('"');
+    }
+
+    private static void nested(final StringBuilder json, final int depth, final Random random) {
+        for (var level = 0; level < depth; level++) {
+            json.append(level % 2 == 0 ? "{\"" + WORDS[random.nextInt(WORDS.length)] + "\":" : "[");
+        }
+        json.append(random.nextInt(1000));
+        for (var level = depth - 1; level >= 0; level--) {
+            json.append(level % 2 == 0 ? '}' : ']');
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package loadingbg.javason.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.*;
+import loadingbg.javason.*;
+import org.openjdk.jmh.annotations.*;
+
+// One lookup per call, walking through the records one after another.
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class DigBenchmark {
+    private static final JSONString CITY = new JSONString("oscar");
+
+    @Param({ "SMALL", "MEDIUM", "HUGE" })
+    public Corpus.Size size;
+
+    private JSONObject root;
+    private JSONObject lazyRoot;
+    private JSONObject updated;
+    private int records;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        final var json = Corpus.RECORDS.generate(size);
+        root = JavaSON.parseJSON(json).orElseThrow().getKey().asObject().orElseThrow();
+        lazyRoot = JavaSON.parseJSONLazy(json).orElseThrow().asObject().orElseThrow();
+        records = root.digArray("items").orElseThrow().value().size();
+        updated = root;
+    }
+
+    @Benchmark
+    public Optional<JSONString> dig() {
+        return root.digString("items", next(), "address", "city");
+    }
+
+    // parses each record the first time it is reached
+    @Benchmark
+    public Optional<JSONString> digLazy() {
+        return lazyRoot.digString("items", next(), "address", "city");
+    }
+
+    // one nested field of a document that keeps changing, the unchanged parts are shared between versions
+    @Benchmark
+    public JSONObject withIn() {
+        updated = updated.withIn(List.of("items", next(), "address", "city"), CITY);
+        return updated;
+    }
+
+    private int next() {
+        index = index + 1 == records ? 0 : index + 1;
+        return index;
+    }
+}
@@ -0,0 +1,66 @@
+package loadingbg.javason.benchmarks;
+
+import java.nio.*;
+import java.nio.charset.*;
+import java.text.*;
+import java.util.concurrent.*;
+import loadingbg.javason.*;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+    @Param({ "RECORDS", "NUMBERS", "STRINGS", "NESTED" })
+    public Corpus shape;
+
+    @Param({ "SMALL", "MEDIUM", "HUGE" })
+    public Corpus.Size size;
+
+    private String json;
+    private byte[] bytes;
+    private byte[] cbor;
+
+    @Setup
+    public void setUp() {
+        json = shape.generate(size);
+        bytes = json.getBytes(StandardCharsets.UTF_8);
+        cbor = CBOR.encode(JavaSON.parseJSON(bytes).orElseThrow(), true);
+    }
+
+    @Benchmark
+    public JSONElement parseString() {
+        return JavaSON.parseJSON(json, new ParsePosition(0)).orElseThrow();
+    }
+
+    @Benchmark
+    public JSONElement parseBytes() {
+        return JavaSON.parseJSON(ByteBuffer.wrap(bytes)).orElseThrow();
+    }
+
+    // the same parser for every document, as a server thread would keep one
+    @Benchmark
+    public JSONElement parseStringReused(final ReusedParser reused) {
+        return reused.parser.parse(json).orElseThrow();
+    }
+
+    // only the outermost container is read
+    @Benchmark
+    public JSONElement parseLazy() {
+        return JavaSON.parseJSONLazy(json).orElseThrow();
+    }
+
+    // the same document as CBOR, with shared strings
+    @Benchmark
+    public JSONElement decodeCBOR() {
+        return CBOR.decode(cbor);
+    }
+
+    @State(Scope.Thread)
+    public static class ReusedParser {
+        final JSONParser parser = new JSONParser();
+    }
+}
@@ -0,0 +1,46 @@
+package loadingbg.javason.benchmarks;
+
+import java.io.*;
+import java.util.concurrent.*;
+import loadingbg.javason.*;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "--enable-preview")
+@State(Scope.Benchmark)
+public class SerializeBenchmark {
+    @Param({ "RECORDS", "NUMBERS", "STRINGS", "NESTED" })
+    public Corpus shape;
+
+    @Param({ "SMALL", "MEDIUM", "HUGE" })
+    public Corpus.Size size;
+
+    private JSONElement tree;
+    private final StringBuilder out = new StringBuilder();
+
+    @Setup
+    public void setUp() {
+        tree = JavaSON.parseJSON(shape.generate(size)).orElseThrow().getKey();
+    }
+
+    @Benchmark
+    public String toJSONString() {
+        return tree.toJSONString();
+    }
+
+    // into a reused builder, so the final copy into a String isn't measured
+    @Benchmark
+    public StringBuilder writeTo() throws IOException {
+        out.setLength(0);
+        tree.writeTo(out);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] encodeCBOR() {
+        return CBOR.encode(tree, true);
+    }
+}
@@ -0,0 +1,446 @@
+package loadingbg.javason.processor;
+
+import java.util.*;
+import javax.annotation.processing.*;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.*;
+
+// Writes the source of one codec. Serializing follows SerializerPlan (record components and the non-private
+// @JSONField methods, keys used twice drop out, a getter that throws is written as null) and binding follows
+// ObjectBinder (records by their components, classes by their one constructor with only @JSONField parameters),
+// so a codec only changes how fast a type goes through JavaSON, not what comes out.
+final class CodecGenerator {
+    private static final String JSON_FIELD = "loadingbg.javason.JSONField";
+
+    private final Types types;
+    private final Elements elements;
+    private final TypeElement type;
+    private final String typeName;
+    private final StringBuilder helpers = new StringBuilder();
+    // helper methods that read a type, by the type
+    private final Map<String, String> readers = new HashMap<>();
+
+    CodecGenerator(final ProcessingEnvironment env, final TypeElement type) {
+        this.types = env.getTypeUtils();
+        this.elements = env.getElementUtils();
+        this.type = type;
+        this.typeName = type.getQualifiedName().toString();
+    }
+
+    static String codecName(final TypeElement type) {
+        var name = type.getSimpleName().toString();
+        for (var enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement outer; enclosing = outer.getEnclosingElement()) {
+            name = outer.getSimpleName() + "_" + name;
+        }
+        return name + "_JSONCodec";
+    }
+
+    // Throws IllegalArgumentException saying why when the type can't have a codec.
+    String generate() {
+        if (!type.getTypeParameters().isEmpty()) {
+            throw new IllegalArgumentException("it is generic");
+        }
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL && type.getNestingKind() != NestingKind.MEMBER) {
+            throw new IllegalArgumentException("it is local or anonymous");
+        }
+        for (Element enclosing = type; enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+                throw new IllegalArgumentException("it is private");
+            }
+        }
+
+        final var body = new StringBuilder();
+        body.append("""
+                @Override
+                public java.lang.Class<%1$s> type() {
+                    return %1$s.class;
+                }
+            """.formatted(typeName));
+        writeMethods(body, getters());
+        body.append('\n');
+        readMethod(body);
+
+        final var packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        return "// Generated by loadingbg.javason.processor.JSONCodecProcessor from " + typeName + ", do not edit.\n"
+            + (packageName.isEmpty() ? "" : "package " + packageName + ";\n")
+            + "\n@SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n"
+            + "public final class " + codecName(type) + " implements loadingbg.javason.JSONCodec<" + typeName + "> {\n"
+            + body
+            + helpers
+            + "}\n";
+    }
+
+    private Map<String, ExecutableElement> getters() {
+        final var methods = new LinkedHashMap<ExecutableElement, String>();
+        for (final var element : type.getEnclosedElements()) {
+            if (element.getKind() == ElementKind.RECORD_COMPONENT) {
+                // every component, under its name unless it has @JSONField
+                final var accessor = ((RecordComponentElement) element).getAccessor();
+                final var key = key(element);
+                methods.put(accessor, key != null ? key : element.getSimpleName().toString());
+            } else if (element.getKind() == ElementKind.METHOD && !element.getModifiers().contains(Modifier.PRIVATE)) {
+                final var key = key(element);
+                if (key != null) {
+                    methods.putIfAbsent((ExecutableElement) element, key);
+                }
+            }
+        }
+
+        final var seenKeys = new HashMap<String, Integer>();
+        methods.values().forEach(key -> seenKeys.merge(key, 1, Integer::sum));
+        final var getters = new LinkedHashMap<String, ExecutableElement>();
+        methods.forEach((method, key) -> {
+            if (!method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID) {
+                throw new IllegalArgumentException(method.getSimpleName() + "() is not a getter");
+            }
+            // methods that share a key cancel each other out
+            if (seenKeys.get(key) == 1) {
+                getters.put(key, method);
+            }
+        });
+        return getters;
+    }
+
+    private void writeMethods(final StringBuilder body, final Map<String, ExecutableElement> getters) {
+        body.append("""
+
+                @Override
+                public loadingbg.javason.JSONElement toJSON(final %s value) {
+                    final var members = java.util.HashMap.<java.lang.String, loadingbg.javason.JSONElement>newHashMap(%d);
+            """.formatted(typeName, getters.size()));
+        var idx = 0;
+        for (final var key : getters.keySet()) {
+            body.append("        members.put(").append(elements.getConstantExpression(key)).append(", toJSON").append(idx++).append("(value));\n");
+        }
+        body.append("""
+                    return new loadingbg.javason.JSONObject(members);
+                }
+
+                @Override
+                public void write(final %s value, final loadingbg.javason.JSONWriter writer) throws java.io.IOException {
+                    writer.beginObject();
+            """.formatted(typeName));
+        idx = 0;
+        for (final var key : getters.keySet()) {
+            body.append("        writer.name(").append(elements.getConstantExpression(key)).append(");\n");
+            body.append("        write").append(idx++).append("(value, writer);\n");
+        }
+        body.append("""
+                    writer.endObject();
+                }
+            """);
+
+        idx = 0;
+        for (final var getter : getters.values()) {
+            final var call = (getter.getModifiers().contains(Modifier.STATIC) ? typeName : "value")
+                + "." + getter.getSimpleName() + "()";
+            final var kind = getter.getReturnType().getKind();
+            final var element = switch (kind) {
+                case BOOLEAN -> "new loadingbg.javason.JSONBoolean(" + call + ")";
+                case BYTE, SHORT, INT, LONG, FLOAT, DOUBLE -> "new loadingbg.javason.JSONNumber(" + call + ")";
+                default -> "loadingbg.javason.JavaSON.toJSON(" + call + ")";
+            };
+            final var write = switch (kind) {
+                case BOOLEAN, BYTE, SHORT, INT, LONG, FLOAT, DOUBLE -> "writer.value(member)";
+                case CHAR -> "writer.write(java.lang.Character.valueOf(member))";
+                default -> "writer.write(member)";
+            };
+            helpers.append("""
+
+                    private static loadingbg.javason.JSONElement toJSON%1$d(final %2$s value) {
+                        try {
+                            return %3$s;
+                        } catch (final java.lang.Exception e) {
+                            return loadingbg.javason.JavaSON.toJSON(null);
+                        }
+                    }
+
+                    private static void write%1$d(final %2$s value, final loadingbg.javason.JSONWriter writer) throws java.io.IOException {
+                        final %4$s member;
+                        try {
+                            member = %5$s;
+                        } catch (final java.lang.Exception e) {
+                            writer.nullValue();
+                            return;
+                        }
+                        %6$s;
+                    }
+                """.formatted(idx++, typeName, element, kind.isPrimitive() ? kind.name().toLowerCase(Locale.ROOT) : "java.lang.Object",
+                    call, write));
+        }
+    }
+
+    private void readMethod(final StringBuilder body) {
+        body.append("""
+                @Override
+                public %s read(final loadingbg.javason.JSONReader reader) throws java.io.IOException {
+            """.formatted(typeName));
+
+        final List<? extends Element> parameters;
+        final ExecutableElement constructor;
+        if (type.getKind() == ElementKind.RECORD) {
+            parameters = type.getRecordComponents();
+            constructor = null;
+        } else {
+            constructor = annotatedConstructor(body);
+            if (constructor == null) {
+                body.append("    }\n");
+                return;
+            }
+            parameters = constructor.getParameters();
+        }
+
+        final var slots = new LinkedHashMap<String, Integer>();
+        for (var idx = 0; idx < parameters.size(); idx++) {
+            final var parameter = parameters.get(idx);
+            final var key = key(parameter);
+            slots.remove(key == null ? parameter.getSimpleName().toString() : key);
+            slots.put(key == null ? parameter.getSimpleName().toString() : key, idx);
+            final var parameterType = parameter.asType();
+            checkNameable(parameterType);
+            body.append("        ").append(parameterType).append(" member").append(idx)
+                .append(parameterType.getKind() == TypeKind.BOOLEAN ? " = false;\n" : parameterType.getKind().isPrimitive() ? " = 0;\n" : " = null;\n");
+        }
+        body.append("""
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+            """);
+        for (final var slot : slots.entrySet()) {
+            final var read = read(parameters.get(slot.getValue()).asType());
+            body.append("                case ").append(elements.getConstantExpression(slot.getKey()))
+                .append(" -> member").append(slot.getValue()).append(" = ").append(read).append(";\n");
+        }
+        body.append("""
+                            default -> reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+            """);
+
+        final var arguments = new StringJoiner(", ");
+        for (var idx = 0; idx < parameters.size(); idx++) {
+            arguments.add("member" + idx);
+        }
+        if (constructor == null || constructor.getThrownTypes().isEmpty()) {
+            body.append("        return new ").append(typeName).append('(').append(arguments).append(");\n");
+        } else {
+            body.append("""
+                        try {
+                            return new %s(%s);
+                        } catch (final java.lang.RuntimeException e) {
+                            throw e;
+                        } catch (final java.lang.Exception e) {
+                            throw new java.lang.reflect.UndeclaredThrowableException(e, "Failed to construct " + type().getName());
+                        }
+                """.formatted(typeName, arguments));
+        }
+        body.append("    }\n");
+    }
+
+    // Returns null after making read() throw what ObjectBinder would if there is no such constructor.
+    private ExecutableElement annotatedConstructor(final StringBuilder body) {
+        ExecutableElement found = null;
+        final var inner = type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC);
+        for (final var element : type.getEnclosedElements()) {
+            if (inner || element.getKind() != ElementKind.CONSTRUCTOR || element.getModifiers().contains(Modifier.PRIVATE)) {
+                continue;
+            }
+            final var constructor = (ExecutableElement) element;
+            if (!constructor.getParameters().isEmpty() && constructor.getParameters().stream().allMatch(parameter -> key(parameter) != null)) {
+                if (found != null) {
+                    body.append("        throw new java.lang.IllegalArgumentException(type() + \" has more than one @JSONField constructor\");\n");
+                    return null;
+                }
+                found = constructor;
+            }
+        }
+        if (found == null || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            body.append("""
+                        throw new java.lang.IllegalArgumentException("Cannot bind JSON to " + type()
+                            + ": it is neither a record nor has a constructor with @JSONField parameters");
+                """);
+            return null;
+        }
+        return found;
+    }
+
+    // Returns an expression that reads a value of the type.
+    private String read(final TypeMirror valueType) {
+        switch (valueType.getKind()) {
+            case BOOLEAN:
+                return "reader.nextBoolean()";
+            case INT:
+                return "reader.nextInt()";
+            case LONG:
+                return "reader.nextLong()";
+            case DOUBLE:
+                return "reader.nextDouble()";
+            case FLOAT:
+                return "(float) reader.nextDouble()";
+            case BYTE:
+            case SHORT:
+            case CHAR:
+                // these check their range, which JavaSON.read already does
+                return "loadingbg.javason.JavaSON.read(reader, " + valueType + ".class)";
+            case ARRAY:
+                return reader(valueType, readArray((ArrayType) valueType));
+            case DECLARED:
+                break;
+            default:
+                throw new IllegalArgumentException("it has a member of type " + valueType);
+        }
+
+        final var declared = (DeclaredType) valueType;
+        final var erasure = types.erasure(valueType).toString();
+        switch (erasure) {
+            case "java.lang.String", "java.lang.CharSequence":
+                return reader(valueType, "return reader.nextString();");
+            case "java.lang.Boolean":
+                return reader(valueType, "return reader.nextBoolean();");
+            case "java.lang.Integer":
+                return reader(valueType, "return reader.nextInt();");
+            case "java.lang.Long":
+                return reader(valueType, "return reader.nextLong();");
+            case "java.lang.Double":
+                return reader(valueType, "return reader.nextDouble();");
+            case "java.lang.Float":
+                return reader(valueType, "return (float) reader.nextDouble();");
+            case "java.lang.Number":
+                return reader(valueType, "return reader.nextNumber().value();");
+            default:
+                break;
+        }
+        final var arguments = declared.getTypeArguments();
+        if (arguments.size() == 1 && (isSubtype(valueType, "java.util.Collection") || erasure.equals("java.lang.Iterable"))) {
+            final var collection = isSubtype("java.util.ArrayList", valueType) ? "java.util.ArrayList"
+                : isSubtype("java.util.LinkedHashSet", valueType) ? "java.util.LinkedHashSet" : null;
+            if (collection != null) {
+                final var element = upperBound(arguments.get(0));
+                return reader(valueType, """
+                    final var values = new %s<%s>();
+                            reader.beginArray();
+                            while (reader.hasNext()) {
+                                values.add(%s);
+                            }
+                            reader.endArray();
+                            return values;""".formatted(collection, element, read(element)));
+            }
+        }
+        if (arguments.size() == 2 && isSubtype(valueType, "java.util.Map") && isSubtype("java.util.LinkedHashMap", valueType)) {
+            final var key = arguments.get(0).getKind() == TypeKind.WILDCARD ? "java.lang.String" : arguments.get(0).toString();
+            if (key.equals("java.lang.String") || key.equals("java.lang.CharSequence") || key.equals("java.lang.Object")) {
+                final var value = upperBound(arguments.get(1));
+                return reader(valueType, """
+                    final var values = new java.util.LinkedHashMap<%s, %s>();
+                            reader.beginObject();
+                            while (reader.hasNext()) {
+                                final var key = reader.nextName();
+                                values.put(key, %s);
+                            }
+                            reader.endObject();
+                            return values;""".formatted(key, value, read(value)));
+            }
+        }
+        // everything else, including collections JavaSON can't create, binds (or fails) the same as it would without a codec
+        return "loadingbg.javason.JavaSON.read(reader, " + erasure + ".class)";
+    }
+
+    private String readArray(final ArrayType arrayType) {
+        final var component = arrayType.getComponentType();
+        final var element = component.getKind().isPrimitive()
+            ? types.boxedClass((PrimitiveType) component).getQualifiedName().toString()
+            : component.toString();
+        var base = types.erasure(component);
+        var dimensions = "";
+        while (base instanceof ArrayType nested) {
+            base = nested.getComponentType();
+            dimensions += "[]";
+        }
+        return """
+            final var values = new java.util.ArrayList<%s>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        values.add(%s);
+                    }
+                    reader.endArray();
+                    final var array = new %s[values.size()]%s;
+                    for (var idx = 0; idx < array.length; idx++) {
+                        array[idx] = values.get(idx);
+                    }
+                    return array;""".formatted(element, read(component), base, dimensions);
+    }
+
+    // Adds a method that reads null or a value of the type with the statements, and returns a call to it.
+    private String reader(final TypeMirror valueType, final String statements) {
+        final var name = readers.get(valueType.toString());
+        if (name != null) {
+            return name + "(reader)";
+        }
+        final var reader = "read" + readers.size();
+        readers.put(valueType.toString(), reader);
+        helpers.append("""
+
+                private static %s %s(final loadingbg.javason.JSONReader reader) throws java.io.IOException {
+                    if (reader.peek() == loadingbg.javason.JSONToken.NULL) {
+                        reader.nextNull();
+                        return null;
+                    }
+                    %s
+                }
+            """.formatted(valueType, reader, statements));
+        return reader + "(reader)";
+    }
+
+    private TypeMirror upperBound(final TypeMirror argument) {
+        if (argument instanceof WildcardType wildcard) {
+            return wildcard.getExtendsBound() != null ? wildcard.getExtendsBound() : elements.getTypeElement("java.lang.Object").asType();
+        }
+        return argument;
+    }
+
+    private boolean isSubtype(final TypeMirror subtype, final String supertype) {
+        return types.isSubtype(types.erasure(subtype), types.erasure(elements.getTypeElement(supertype).asType()));
+    }
+
+    private boolean isSubtype(final String subtype, final TypeMirror supertype) {
+        return types.isSubtype(types.erasure(elements.getTypeElement(subtype).asType()), types.erasure(supertype));
+    }
+
+    // The codec has to spell out the types it binds, so they must be visible from outside the class.
+    private void checkNameable(final TypeMirror typeMirror) {
+        if (typeMirror instanceof ArrayType array) {
+            checkNameable(array.getComponentType());
+        } else if (typeMirror instanceof WildcardType wildcard) {
+            if (wildcard.getExtendsBound() != null) {
+                checkNameable(wildcard.getExtendsBound());
+            }
+            if (wildcard.getSuperBound() != null) {
+                checkNameable(wildcard.getSuperBound());
+            }
+        } else if (typeMirror instanceof DeclaredType declared) {
+            for (Element enclosing = declared.asElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+                if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+                    throw new IllegalArgumentException("it has a member of private type " + typeMirror);
+                }
+            }
+            declared.getTypeArguments().forEach(this::checkNameable);
+        } else if (typeMirror instanceof TypeVariable) {
+            throw new IllegalArgumentException("it has a member of generic type " + typeMirror);
+        }
+    }
+
+    private static String key(final Element element) {
+        for (final var annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(JSON_FIELD)) {
+                for (final var value : annotation.getElementValues().entrySet()) {
+                    if (value.getKey().getSimpleName().contentEquals("value")) {
+                        return (String) value.getValue().getValue();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
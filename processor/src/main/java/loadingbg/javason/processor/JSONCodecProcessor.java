@@ -0,0 +1,92 @@
+package loadingbg.javason.processor;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import javax.annotation.processing.*;
+import javax.lang.model.*;
+import javax.lang.model.element.*;
+import javax.tools.*;
+
+// Generates a JSONCodec next to every class and record with @JSONField members, so JavaSON serializes and binds
+// them without reflection. The codecs are listed in META-INF/services/loadingbg.javason.JSONCodec, which is how
+// the class path finds them; a named module has to declare "provides loadingbg.javason.JSONCodec with ..." itself.
+// A type the processor can't write code for gets a warning and keeps using reflection.
+@SupportedAnnotationTypes(JSONCodecProcessor.JSON_FIELD)
+public final class JSONCodecProcessor extends AbstractProcessor {
+    static final String JSON_FIELD = "loadingbg.javason.JSONField";
+    private static final String SERVICE_FILE = "META-INF/services/loadingbg.javason.JSONCodec";
+
+    private final Set<String> seenTypes = new HashSet<>();
+    private final Set<String> codecs = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final var jsonField = processingEnv.getElementUtils().getTypeElement(JSON_FIELD);
+        if (jsonField != null) {
+            final var owners = new LinkedHashSet<TypeElement>();
+            for (final var element : roundEnv.getElementsAnnotatedWith(jsonField)) {
+                var owner = element.getEnclosingElement();
+                while (owner != null && !(owner instanceof TypeElement)) {
+                    owner = owner.getEnclosingElement();
+                }
+                if (owner != null) {
+                    owners.add((TypeElement) owner);
+                }
+            }
+            for (final var owner : owners) {
+                if (seenTypes.add(owner.getQualifiedName().toString())) {
+                    generate(owner);
+                }
+            }
+        }
+        if (roundEnv.processingOver() && !codecs.isEmpty()) {
+            writeServiceFile();
+        }
+        return false;
+    }
+
+    private void generate(final TypeElement type) {
+        // only instances of exactly this class use the codec, and interfaces, enums and abstract classes have none
+        if (type.getKind() != ElementKind.CLASS && type.getKind() != ElementKind.RECORD
+            || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return;
+        }
+        final String source;
+        try {
+            source = new CodecGenerator(processingEnv, type).generate();
+        } catch (final IllegalArgumentException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "No JSONCodec generated for " + type.getQualifiedName() + ": " + e.getMessage(), type);
+            return;
+        }
+
+        final var packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        final var codecName = (packageName.isEmpty() ? "" : packageName + ".") + CodecGenerator.codecName(type);
+        try (final var out = processingEnv.getFiler().createSourceFile(codecName, type).openWriter()) {
+            out.write(source);
+        } catch (final IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write " + codecName + ": " + e, type);
+            return;
+        }
+        codecs.add(codecName);
+    }
+
+    private void writeServiceFile() {
+        // an incremental build that recompiles only some of the types lists only their codecs, so build cleanly
+        try (final var out = new OutputStreamWriter(processingEnv.getFiler()
+            .createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE).openOutputStream(), StandardCharsets.UTF_8)) {
+            for (final var codec : codecs) {
+                out.write(codec);
+                out.write('\n');
+            }
+        } catch (final IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write " + SERVICE_FILE + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package loadingbg.javason;
+
+import java.util.*;
+
+// Collects parsed array elements, keeping them as primitives for as long as they are all longs or all doubles.
+final class ArrayBuilder {
+    private static final int EMPTY = 0;
+    private static final int LONGS = 1;
+    private static final int DOUBLES = 2;
+    private static final int ELEMENTS = 3;
+
+    private int mode = EMPTY;
+    private long[] longs;
+    private double[] doubles;
+    private ArrayList<JSONElement> elements;
+    private int size;
+
+    void add(final JSONElement element) {
+        if (mode == EMPTY && element instanceof JSONNumber num && (num.isLong() || num.isDouble())) {
+            mode = num.isLong() ? LONGS : DOUBLES;
+        }
+        switch (mode) {
+            case LONGS -> {
+                if (element instanceof JSONNumber num && num.isLong()) {
+                    if (longs == null || size == longs.length) {
+                        longs = longs == null ? new long[16] : Arrays.copyOf(longs, size * 2);
+                    }
+                    longs[size++] = num.longValue();
+                    return;
+                }
+                inflate();
+            }
+            case DOUBLES -> {
+                if (element instanceof JSONNumber num && num.isDouble()) {
+                    if (doubles == null || size == doubles.length) {
+                        doubles = doubles == null ? new double[16] : Arrays.copyOf(doubles, size * 2);
+                    }
+                    doubles[size++] = num.doubleValue();
+                    return;
+                }
+                inflate();
+            }
+            default -> {}
+        }
+        if (elements == null) {
+            elements = new ArrayList<>();
+            mode = ELEMENTS;
+        }
+        elements.add(element);
+        size++;
+    }
+
+    JSONArray build() {
+        return new JSONArray(switch (mode) {
+            case LONGS -> new PackedNumberList.Longs(Arrays.copyOf(longs, size));
+            case DOUBLES -> new PackedNumberList.Doubles(Arrays.copyOf(doubles, size));
+            case ELEMENTS -> Collections.unmodifiableList(elements);
+            default -> Collections.emptyList();
+        });
+    }
+
+    // Makes the builder empty again; build() hands out the element list, so that one can't be kept.
+    void reset() {
+        mode = EMPTY;
+        size = 0;
+        elements = null;
+        if (longs != null && longs.length > ParserBuffers.MAX_RETAINED) {
+            longs = null;
+        }
+        if (doubles != null && doubles.length > ParserBuffers.MAX_RETAINED) {
+            doubles = null;
+        }
+    }
+
+    private void inflate() {
+        elements = new ArrayList<>(Math.max(size * 2, 16));
+        for (var idx = 0; idx < size; idx++) {
+            elements.add(mode == LONGS ? JSONNumber.of(longs[idx]) : JSONNumber.of(doubles[idx]));
+        }
+        longs = null;
+        doubles = null;
+        mode = ELEMENTS;
+    }
+}
@@ -0,0 +1,241 @@
+package loadingbg.javason;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.math.*;
+import java.util.*;
+
+@FunctionalInterface
+interface Binder {
+    Object read(JSONReader reader) throws IOException;
+
+    static Binder of(final Type type) {
+        return switch (type) {
+            case Class<?> cls -> of(cls);
+            case ParameterizedType parameterized -> {
+                final var raw = (Class<?>) parameterized.getRawType();
+                final var arguments = parameterized.getActualTypeArguments();
+                if (Collection.class.isAssignableFrom(raw) || raw == Iterable.class) {
+                    yield collection(raw, of(arguments[0]));
+                }
+                if (Map.class.isAssignableFrom(raw)) {
+                    yield map(raw, arguments[0], of(arguments[1]));
+                }
+                yield of(raw);
+            }
+            case GenericArrayType array -> array(rawType(array.getGenericComponentType()), of(array.getGenericComponentType()));
+            case WildcardType wildcard -> of(wildcard.getUpperBounds()[0]);
+            case TypeVariable<?> variable -> of(variable.getBounds()[0]);
+            default -> throw new IllegalArgumentException("Cannot bind JSON to " + type);
+        };
+    }
+
+    private static Binder of(final Class<?> type) {
+        if (type.isPrimitive()) {
+            return primitive(type);
+        }
+        if (type == Object.class) {
+            return Binder::readObject;
+        }
+        if (type == String.class || type == CharSequence.class) {
+            return nullable(JSONReader::nextString);
+        }
+        if (type == Boolean.class) {
+            return nullable(JSONReader::nextBoolean);
+        }
+        if (type == Character.class || type == Byte.class || type == Short.class || type == Integer.class
+            || type == Long.class || type == Float.class || type == Double.class) {
+            return nullable(primitive(MethodType.methodType(type).unwrap().returnType()));
+        }
+        if (type == BigInteger.class) {
+            return nullable(reader -> switch (reader.nextNumber().value()) {
+                case BigInteger bigInt -> bigInt;
+                case BigDecimal bigDecimal -> bigDecimal.toBigInteger();
+                case Number num -> num instanceof Float || num instanceof Double
+                    ? BigDecimal.valueOf(num.doubleValue()).toBigInteger()
+                    : BigInteger.valueOf(num.longValue());
+            });
+        }
+        if (type == BigDecimal.class) {
+            return nullable(reader -> switch (reader.nextNumber().value()) {
+                case BigDecimal bigDecimal -> bigDecimal;
+                case BigInteger bigInt -> new BigDecimal(bigInt);
+                case Number num -> new BigDecimal(num.toString());
+            });
+        }
+        if (type == Number.class) {
+            return nullable(reader -> reader.nextNumber().value());
+        }
+        if (type == JSONElement.class) {
+            return JSONReader::nextElement;
+        }
+        if (JSONElement.class.isAssignableFrom(type)) {
+            return reader -> {
+                final var element = reader.nextElement();
+                if (type.isInstance(element)) {
+                    return element;
+                }
+                if (element.isNull()) {
+                    return null;
+                }
+                throw new JSONException("Expected " + type.getSimpleName() + " but was " + element.getClass().getSimpleName(), reader.position());
+            };
+        }
+        if (type.isArray()) {
+            return array(type.getComponentType(), of(type.getComponentType()));
+        }
+        if (Collection.class.isAssignableFrom(type) || type == Iterable.class) {
+            return collection(type, Binder::readObject);
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return map(type, String.class, Binder::readObject);
+        }
+        final var codec = Codecs.of(type);
+        if (codec != null) {
+            return nullable(codec::read);
+        }
+        // resolved on use, so recursive types don't recurse while their binders are built
+        return nullable(reader -> ObjectBinder.of(type).read(reader));
+    }
+
+    private static Binder primitive(final Class<?> type) {
+        if (type == boolean.class) {
+            return JSONReader::nextBoolean;
+        }
+        if (type == int.class) {
+            return JSONReader::nextInt;
+        }
+        if (type == long.class) {
+            return JSONReader::nextLong;
+        }
+        if (type == double.class) {
+            return JSONReader::nextDouble;
+        }
+        if (type == float.class) {
+            return reader -> (float) reader.nextDouble();
+        }
+        if (type == byte.class || type == short.class) {
+            return reader -> {
+                final var value = reader.nextInt();
+                if (type == byte.class ? (byte) value != value : (short) value != value) {
+                    throw new JSONException("Expected a " + type + " but was " + value, reader.position());
+                }
+                return type == byte.class ? (Object) (byte) value : (Object) (short) value;
+            };
+        }
+        if (type == char.class) {
+            return reader -> {
+                final var value = reader.nextString();
+                if (value.length() != 1) {
+                    throw new JSONException("Expected a single character but was \"" + value + "\"", reader.position());
+                }
+                return value.charAt(0);
+            };
+        }
+        throw new IllegalArgumentException("Cannot bind JSON to " + type);
+    }
+
+    private static Binder nullable(final Binder binder) {
+        return reader -> {
+            if (reader.peek() == JSONToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+            return binder.read(reader);
+        };
+    }
+
+    private static Binder collection(final Class<?> type, final Binder elementBinder) {
+        final var isList = type.isAssignableFrom(ArrayList.class);
+        if (!isList && !type.isAssignableFrom(LinkedHashSet.class)) {
+            throw new IllegalArgumentException("Cannot bind JSON to " + type);
+        }
+        return nullable(reader -> {
+            final Collection<Object> values = isList ? new ArrayList<>() : new LinkedHashSet<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                values.add(elementBinder.read(reader));
+            }
+            reader.endArray();
+            return values;
+        });
+    }
+
+    private static Binder map(final Class<?> type, final Type keyType, final Binder valueBinder) {
+        if (!type.isAssignableFrom(LinkedHashMap.class)
+            || keyType != String.class && keyType != CharSequence.class && keyType != Object.class && !(keyType instanceof WildcardType)) {
+            throw new IllegalArgumentException("Cannot bind JSON to " + type + " with " + keyType + " keys");
+        }
+        return nullable(reader -> {
+            final var values = new LinkedHashMap<String, Object>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final var key = reader.nextName();
+                values.put(key, valueBinder.read(reader));
+            }
+            reader.endObject();
+            return values;
+        });
+    }
+
+    private static Binder array(final Class<?> componentType, final Binder elementBinder) {
+        return nullable(reader -> {
+            final var values = new ArrayList<>();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                values.add(elementBinder.read(reader));
+            }
+            reader.endArray();
+            final var array = Array.newInstance(componentType, values.size());
+            for (var idx = 0; idx < values.size(); idx++) {
+                Array.set(array, idx, values.get(idx));
+            }
+            return array;
+        });
+    }
+
+    private static Class<?> rawType(final Type type) {
+        return switch (type) {
+            case Class<?> cls -> cls;
+            case ParameterizedType parameterized -> (Class<?>) parameterized.getRawType();
+            case GenericArrayType array -> rawType(array.getGenericComponentType()).arrayType();
+            case WildcardType wildcard -> rawType(wildcard.getUpperBounds()[0]);
+            case TypeVariable<?> variable -> rawType(variable.getBounds()[0]);
+            default -> throw new IllegalArgumentException("Cannot bind JSON to " + type);
+        };
+    }
+
+    // Reads any value as the plain Java types JavaSON.toJSON accepts.
+    private static Object readObject(final JSONReader reader) throws IOException {
+        return switch (reader.peek()) {
+            case NULL -> {
+                reader.nextNull();
+                yield null;
+            }
+            case BOOLEAN -> reader.nextBoolean();
+            case NUMBER -> reader.nextNumber().value();
+            case STRING -> reader.nextString();
+            case BEGIN_ARRAY -> {
+                final var values = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    values.add(readObject(reader));
+                }
+                reader.endArray();
+                yield values;
+            }
+            case BEGIN_OBJECT -> {
+                final var values = new LinkedHashMap<String, Object>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    final var key = reader.nextName();
+                    values.put(key, readObject(reader));
+                }
+                reader.endObject();
+                yield values;
+            }
+            default -> throw new JSONException("Expected a value but was " + reader.peek(), reader.position());
+        };
+    }
+}
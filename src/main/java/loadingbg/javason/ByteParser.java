@@ -0,0 +1,588 @@
+package loadingbg.javason;
+
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+// Parses UTF-8 straight out of a ByteBuffer; offsets are absolute byte indices in the buffer.
+final class ByteParser {
+    private final ByteBuffer json;
+    private final int length;
+    // number text is ASCII, so NumberParser's slow paths can read it byte for byte
+    private final CharSequence asciiView;
+    private int index;
+    private int errorIndex = -1;
+    // set when containers are only skimmed and their values parsed on access
+    private final LazySource lazySource;
+    private final ParserBuffers buffers;
+    private final KeyCache keys;
+    private final JSONLimits limits;
+
+    ByteParser(final ByteBuffer json, final int index) {
+        this(json, index, JSONLimits.DEFAULT);
+    }
+
+    ByteParser(final ByteBuffer json, final int index, final JSONLimits limits) {
+        this(json, index, new ParserBuffers(new KeyCache()), limits);
+    }
+
+    ByteParser(final ByteBuffer json, final int index, final ParserBuffers buffers, final JSONLimits limits) {
+        this(json, index, null, buffers, limits);
+        checkDocumentSize();
+    }
+
+    private ByteParser(final ByteBuffer json, final int index, final LazySource lazySource, final ParserBuffers buffers,
+                       final JSONLimits limits) {
+        this.json = json;
+        this.length = json.limit();
+        this.index = index;
+        this.lazySource = lazySource;
+        this.buffers = buffers;
+        this.keys = buffers.keys;
+        this.limits = limits;
+        this.asciiView = new AsciiView(json);
+    }
+
+    static ByteParser lazy(final ByteBuffer json, final int index, final JSONLimits limits) {
+        final var keys = new KeyCache();
+        final var parser = new ByteParser(json, index, new LazyBytes(json, keys, limits), new ParserBuffers(keys), limits);
+        parser.checkDocumentSize();
+        return parser;
+    }
+
+    private void checkDocumentSize() {
+        if (length - index > limits.maxDocumentSize()) {
+            throw limits.documentSizeExceeded(index + limits.maxDocumentSize());
+        }
+    }
+
+    // the key cache is shared by every value parsed out of the document
+    private record LazyBytes(ByteBuffer json, KeyCache keys, JSONLimits limits) implements LazySource {
+        @Override
+        public JSONElement parseAt(final int offset) {
+            return parse(new ByteParser(json, offset, this, new ParserBuffers(keys), limits));
+        }
+
+        @Override
+        public JSONElement parseFullyAt(final int offset) {
+            return parse(new ByteParser(json, offset, null, new ParserBuffers(keys), limits));
+        }
+
+        private static JSONElement parse(final ByteParser parser) {
+            final var element = parser.parseValue();
+            if (element == null) {
+                throw new JSONException("Malformed JSON value", parser.errorIndex());
+            }
+            return element;
+        }
+    }
+
+    int index() {
+        return index;
+    }
+
+    int errorIndex() {
+        return errorIndex;
+    }
+
+    // Returns null on failure, leaving the offending position in errorIndex.
+    // Containers are kept on an explicit stack, as in StringParser.
+    JSONElement parseValue() {
+        var builders = buffers.open;
+        var pendingKeys = buffers.pendingKeys;
+        var depth = 0;
+        while (true) {
+            skipWhitespace();
+            if (index >= length) {
+                return fail(index);
+            }
+            final var currChar = json.get(index);
+            JSONElement value;
+            if ((currChar == '[' || currChar == '{') && lazySource == null) {
+                if (depth == limits.maxDepth()) {
+                    throw limits.depthExceeded(index);
+                }
+                index++;
+                skipWhitespace();
+                final var isArray = currChar == '[';
+                if (index < length && json.get(index) == (isArray ? ']' : '}')) {
+                    index++;
+                    value = isArray ? new JSONArray(Collections.emptyList()) : new JSONObject(Collections.emptyMap());
+                } else {
+                    if (depth == builders.length) {
+                        buffers.grow();
+                        builders = buffers.open;
+                        pendingKeys = buffers.pendingKeys;
+                    }
+                    builders[depth] = isArray ? buffers.array(depth) : buffers.object(depth);
+                    if (!isArray && (pendingKeys[depth] = parseKey()) == null) {
+                        return null;
+                    }
+                    depth++;
+                    continue;
+                }
+            } else {
+                value = switch (currChar) {
+                    case 'n' -> parseLiteral("null", JSONNull.INSTANCE);
+                    case 't' -> parseLiteral("true", new JSONBoolean(true));
+                    case 'f' -> parseLiteral("false", new JSONBoolean(false));
+                    case '"' -> parseString();
+                    case '[' -> parseLazyArray();
+                    case '{' -> parseLazyObject();
+                    default -> parseNumber();
+                };
+                if (value == null) {
+                    return null;
+                }
+            }
+
+            // hand the value to its container, then close every container that ends right after it
+            while (depth > 0) {
+                final var builder = builders[depth - 1];
+                if (builder instanceof ArrayBuilder array) {
+                    array.add(value);
+                } else {
+                    ((ObjectBuilder) builder).put(pendingKeys[depth - 1], value);
+                }
+
+                skipWhitespace();
+                if (index >= length) {
+                    return fail(index);
+                }
+                final var separator = json.get(index++);
+                if (separator == ',') {
+                    if (builder instanceof ObjectBuilder && (pendingKeys[depth - 1] = parseKey()) == null) {
+                        return null;
+                    }
+                    break;
+                }
+                if (builder instanceof ArrayBuilder array && separator == ']') {
+                    value = array.build();
+                    array.reset();
+                } else if (builder instanceof ObjectBuilder object && separator == '}') {
+                    value = object.build();
+                    object.reset();
+                } else {
+                    return fail(index - 1);
+                }
+                builders[--depth] = null;
+            }
+            if (depth == 0) {
+                return value;
+            }
+        }
+    }
+
+    // Reads an object key and the colon after it.
+    private String parseKey() {
+        skipWhitespace();
+        final var key = parseText(true);
+        if (key == null) {
+            return null;
+        }
+        skipWhitespace();
+        if (index >= length || json.get(index) != ':') {
+            return fail(index);
+        }
+        index++;
+        return key;
+    }
+
+    private JSONElement parseLiteral(final String literal, final JSONElement value) {
+        if (index + literal.length() > length) {
+            return fail(index);
+        }
+        for (var idx = 0; idx < literal.length(); idx++) {
+            if (json.get(index + idx) != literal.charAt(idx)) {
+                return fail(index);
+            }
+        }
+        index += literal.length();
+        return value;
+    }
+
+    private JSONNumber parseNumber() {
+        final var start = index;
+        var idx = index;
+        final var isNegative = idx < length && json.get(idx) == '-';
+        if (isNegative) {
+            idx++;
+        }
+
+        var significand = 0L;
+        var digits = 0;
+        var exponent = 0;
+        final var wholeStart = idx;
+        if (idx < length && json.get(idx) == '0') {
+            idx++;
+        } else {
+            while (idx < length && isDigit(json.get(idx))) {
+                if (digits < NumberParser.MAX_SIGNIFICAND_DIGITS) {
+                    significand = significand * 10 + (json.get(idx) - '0');
+                } else {
+                    exponent++;
+                }
+                digits++;
+                idx++;
+            }
+        }
+        if (idx == wholeStart) {
+            return fail(idx);
+        }
+
+        var hasFraction = false;
+        if (idx < length && json.get(idx) == '.') {
+            idx++;
+            final var fracStart = idx;
+            while (idx < length && isDigit(json.get(idx))) {
+                final var digit = json.get(idx) - '0';
+                if (digits < NumberParser.MAX_SIGNIFICAND_DIGITS) {
+                    // leading zeros only move the exponent
+                    if (digits > 0 || digit != 0) {
+                        significand = significand * 10 + digit;
+                        digits++;
+                    }
+                    exponent--;
+                } else {
+                    digits++;
+                }
+                idx++;
+            }
+            if (idx == fracStart) {
+                return fail(idx);
+            }
+            hasFraction = true;
+        }
+
+        if (idx < length && (json.get(idx) == 'e' || json.get(idx) == 'E')) {
+            idx++;
+            var isNegativeExponent = false;
+            if (idx < length && (json.get(idx) == '-' || json.get(idx) == '+')) {
+                isNegativeExponent = json.get(idx) == '-';
+                idx++;
+            }
+            final var expStart = idx;
+            var explicitExponent = 0;
+            while (idx < length && isDigit(json.get(idx))) {
+                // saturate, the exact value only matters to BigDecimal
+                explicitExponent = Math.min(explicitExponent * 10 + (json.get(idx) - '0'), 1_000_000);
+                idx++;
+            }
+            if (idx == expStart) {
+                return fail(idx);
+            }
+            exponent += isNegativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (idx - start > limits.maxNumberLength()) {
+            throw limits.numberLengthExceeded(start);
+        }
+        index = idx;
+        try {
+            return NumberParser.toNumber(asciiView, start, idx, isNegative, significand, digits, exponent, hasFraction);
+        } catch (final NumberFormatException e) {
+            // exponent doesn't fit in an int
+            return fail(start);
+        }
+    }
+
+    JSONString parseString() {
+        final var text = parseText(false);
+        return text == null ? null : new JSONString(text);
+    }
+
+    // Keys without escapes go through the key cache.
+    private String parseText(final boolean isKey) {
+        if (index >= length || json.get(index) != '"') {
+            return fail(index);
+        }
+
+        final var start = index + 1;
+        // the closing quote of a string within the limit comes before this
+        final var end = (int) Math.min(length, start + (long) limits.maxStringLength() + 1);
+        var idx = StructuralScanner.INSTANCE.scanString(json, start, end);
+        if (idx < end && json.get(idx) == '"') {
+            index = idx + 1;
+            return isKey ? keys.intern(json, start, idx) : ascii(json, start, idx);
+        }
+        if (idx == end && end < length) {
+            throw limits.stringLengthExceeded(start - 1);
+        }
+
+        final var valueBuilder = buffers.text().append(ascii(json, start, idx));
+        while (idx < end) {
+            final var currChar = json.get(idx);
+            if (currChar == '"') {
+                index = idx + 1;
+                return valueBuilder.toString();
+            } else if (currChar == '\\') {
+                if (idx + 1 >= length) {
+                    return fail(idx);
+                }
+                final var escaped = json.get(idx + 1);
+                switch (escaped) {
+                    case '"', '\'', '/', '\\' -> valueBuilder.append((char) escaped);
+                    case 'b' -> valueBuilder.append('\b');
+                    case 'f' -> valueBuilder.append('\f');
+                    case 'n' -> valueBuilder.append('\n');
+                    case 'r' -> valueBuilder.append('\r');
+                    case 't' -> valueBuilder.append('\t');
+                    case 'u' -> {
+                        if (idx + 5 >= length) {
+                            return fail(idx);
+                        }
+                        // hexIdx is relative to the backslash
+                        var unicodeValue = 0;
+                        for (var hexIdx = 2; hexIdx < 6; hexIdx++) {
+                            final var hexValue = StringParser.hexValue((char) json.get(idx + hexIdx));
+                            if (hexValue < 0) {
+                                return fail(idx + hexIdx);
+                            }
+                            unicodeValue = (unicodeValue << 4) | hexValue;
+                        }
+                        valueBuilder.append((char) unicodeValue);
+                        idx += 4;
+                    }
+                    default -> {
+                        return fail(idx);
+                    }
+                }
+                idx += 2;
+            } else if (currChar >= 0) {
+                valueBuilder.append((char) currChar);
+                idx++;
+            } else {
+                final var next = appendMultiByte(valueBuilder, idx);
+                if (next < 0) {
+                    return fail(idx);
+                }
+                idx = next;
+            }
+        }
+        if (idx < length) {
+            throw limits.stringLengthExceeded(start - 1);
+        }
+        return fail(idx);
+    }
+
+    // Appends the code point encoded by the UTF-8 sequence at idx and returns the index after it,
+    // or -1 if the sequence is malformed, overlong or encodes a surrogate.
+    private int appendMultiByte(final StringBuilder valueBuilder, final int idx) {
+        final var lead = json.get(idx) & 0xFF;
+        final int continuations;
+        final int min;
+        var codePoint = 0;
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            continuations = 1;
+            min = 0x80;
+            codePoint = lead & 0x1F;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            continuations = 2;
+            min = 0x800;
+            codePoint = lead & 0x0F;
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            continuations = 3;
+            min = 0x10000;
+            codePoint = lead & 0x07;
+        } else {
+            return -1;
+        }
+        if (idx + continuations >= length) {
+            return -1;
+        }
+        for (var offset = 1; offset <= continuations; offset++) {
+            final var continuation = json.get(idx + offset);
+            if ((continuation & 0xC0) != 0x80) {
+                return -1;
+            }
+            codePoint = (codePoint << 6) | (continuation & 0x3F);
+        }
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+            || codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            return -1;
+        }
+        valueBuilder.appendCodePoint(codePoint);
+        return idx + continuations + 1;
+    }
+
+    // Decodes bytes that are known to be ASCII.
+    static String ascii(final ByteBuffer json, final int start, final int end) {
+        if (json.hasArray()) {
+            return new String(json.array(), json.arrayOffset() + start, end - start, StandardCharsets.ISO_8859_1);
+        }
+        final var bytes = new byte[end - start];
+        json.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private JSONArray parseLazyArray() {
+        index++;
+        var offsets = new int[16];
+        var size = 0;
+        skipWhitespace();
+        if (index < length && json.get(index) == ']') {
+            index++;
+            return new JSONArray(Collections.emptyList());
+        }
+
+        while (true) {
+            skipWhitespace();
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = index;
+            if (!skipValue()) {
+                return null;
+            }
+
+            skipWhitespace();
+            if (index >= length) {
+                return fail(index);
+            }
+            final var separator = json.get(index++);
+            if (separator == ']') {
+                return new JSONArray(new LazyArrayList(lazySource, Arrays.copyOf(offsets, size)));
+            }
+            if (separator != ',') {
+                return fail(index - 1);
+            }
+        }
+    }
+
+    private JSONObject parseLazyObject() {
+        index++;
+        final var slots = new HashMap<String, Integer>();
+        var offsets = new int[16];
+        skipWhitespace();
+        if (index < length && json.get(index) == '}') {
+            index++;
+            return new JSONObject(Collections.emptyMap());
+        }
+
+        while (true) {
+            final var currKey = parseKey();
+            if (currKey == null) {
+                return null;
+            }
+
+            skipWhitespace();
+            // the last value of a repeated key wins, as in ObjectBuilder
+            final var slot = slots.computeIfAbsent(currKey, key -> slots.size());
+            if (slot == offsets.length) {
+                offsets = Arrays.copyOf(offsets, slot * 2);
+            }
+            offsets[slot] = index;
+            if (!skipValue()) {
+                return null;
+            }
+
+            skipWhitespace();
+            if (index >= length) {
+                return fail(index);
+            }
+            final var separator = json.get(index++);
+            if (separator == '}') {
+                return new JSONObject(new LazyObjectMap(lazySource, slots, Arrays.copyOf(offsets, slots.size())));
+            }
+            if (separator != ',') {
+                return fail(index - 1);
+            }
+        }
+    }
+
+    // Moves past one value by matching up brackets and strings only; what is inside is checked once it is parsed.
+    private boolean skipValue() {
+        if (index < length && (json.get(index) == '[' || json.get(index) == '{')) {
+            // the container being skimmed is one level deeper than the value's own
+            final var end = StructuralScanner.INSTANCE.skipContainer(json, index, length, limits.maxDepth() - 1);
+            if (end < -1) {
+                throw limits.depthExceeded(-2 - end);
+            }
+            if (end < 0) {
+                errorIndex = length;
+                return false;
+            }
+            index = end;
+            return true;
+        }
+        if (index < length && json.get(index) == '"') {
+            return skipString();
+        }
+
+        final var start = index;
+        while (index < length) {
+            final var currChar = json.get(index);
+            // a closing bracket ends the enclosing container
+            if (currChar == ',' || currChar == ']' || currChar == '}' || isWhitespace(currChar)) {
+                break;
+            }
+            index++;
+        }
+        if (index > start) {
+            return true;
+        }
+        errorIndex = index;
+        return false;
+    }
+
+    // Bytes of multi-byte UTF-8 sequences are never quotes or backslashes, so strings can be skipped bytewise.
+    private boolean skipString() {
+        var idx = StructuralScanner.INSTANCE.scanString(json, index + 1, length);
+        while (idx < length) {
+            final var currChar = json.get(idx);
+            if (currChar == '"') {
+                index = idx + 1;
+                return true;
+            }
+            idx = StructuralScanner.INSTANCE.scanString(json, idx + (currChar == '\\' ? 2 : 1), length);
+        }
+        errorIndex = index;
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (index < length && isWhitespace(json.get(index))) {
+            index++;
+        }
+    }
+
+    private <T> T fail(final int at) {
+        errorIndex = at;
+        return null;
+    }
+
+    // The ASCII part of what StringParser skips; the other Unicode whitespace is never valid JSON whitespace anyway.
+    static boolean isWhitespace(final byte c) {
+        return c >= 0 && StringParser.isWhitespace((char) c);
+    }
+
+    private static boolean isDigit(final byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private record AsciiView(ByteBuffer bytes) implements CharSequence {
+        @Override
+        public int length() {
+            return bytes.limit();
+        }
+
+        @Override
+        public char charAt(final int index) {
+            return (char) bytes.get(index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            final var chars = new char[end - start];
+            for (var idx = 0; idx < chars.length; idx++) {
+                chars[idx] = charAt(start + idx);
+            }
+            return new String(chars);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+}
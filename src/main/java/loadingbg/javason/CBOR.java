@@ -0,0 +1,696 @@
+package loadingbg.javason;
+
+import java.io.*;
+import java.math.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+// Binary encoding of JSONElement trees as CBOR (RFC 8949), for caches and transfer between services that would
+// otherwise print and re-parse the text. Containers are length-prefixed and numbers keep what JSONNumber holds:
+// longs as integers, doubles as the shortest of half, single and double precision floats that is exact,
+// BigIntegers as integers or bignums (tags 2 and 3) and BigDecimals as decimal fractions (tag 4).
+// With shareStrings the value is wrapped in a stringref namespace (tag 256, http://cbor.schmorp.de/stringref) and
+// strings seen before, object keys mostly, are written as references to their first occurrence (tag 25).
+// The decoder takes any CBOR whose maps have text keys: unknown tags are ignored, undefined decodes as null and
+// byte strings as base64url text, as RFC 8949 section 6.1 suggests.
+public final class CBOR {
+    private static final int UNSIGNED = 0;
+    private static final int NEGATIVE = 1;
+    private static final int BYTES = 2;
+    private static final int TEXT = 3;
+    private static final int ARRAY = 4;
+    private static final int MAP = 5;
+    private static final int TAG = 6;
+
+    private static final int TAG_POSITIVE_BIGNUM = 2;
+    private static final int TAG_NEGATIVE_BIGNUM = 3;
+    private static final int TAG_DECIMAL = 4;
+    private static final int TAG_STRINGREF = 25;
+    private static final int TAG_STRINGREF_NAMESPACE = 256;
+
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+    private static final int HALF = 0xf9;
+    private static final int SINGLE = 0xfa;
+    private static final int DOUBLE = 0xfb;
+    private static final int BREAK = 0xff;
+    // the additional info of an indefinite length
+    private static final int INDEFINITE = 31;
+
+    private CBOR() {}
+
+    public static byte[] encode(final JSONElement value) {
+        return encode(value, false);
+    }
+
+    public static byte[] encode(final JSONElement value, final boolean shareStrings) {
+        final var encoder = new Encoder(shareStrings);
+        encoder.value(value);
+        return encoder.toByteArray();
+    }
+
+    public static void encode(final JSONElement value, final boolean shareStrings, final OutputStream out) throws IOException {
+        final var encoder = new Encoder(shareStrings);
+        encoder.value(value);
+        encoder.writeTo(out);
+    }
+
+    // The array has to hold exactly one value.
+    public static JSONElement decode(final byte[] cbor) {
+        return decode(cbor, JSONLimits.DEFAULT);
+    }
+
+    public static JSONElement decode(final byte[] cbor, final JSONLimits limits) {
+        final var buffer = ByteBuffer.wrap(cbor);
+        final var value = decode(buffer, limits);
+        if (buffer.hasRemaining()) {
+            throw new JSONException("Unexpected data after the value", buffer.position());
+        }
+        return value;
+    }
+
+    // Decodes the value at the buffer's position and moves the position past it, so a CBOR sequence (RFC 8742) is
+    // read by calling this until the buffer is empty.
+    public static JSONElement decode(final ByteBuffer cbor) {
+        return decode(cbor, JSONLimits.DEFAULT);
+    }
+
+    public static JSONElement decode(final ByteBuffer cbor, final JSONLimits limits) {
+        if (cbor.remaining() > limits.maxDocumentSize()) {
+            throw limits.documentSizeExceeded(cbor.position() + limits.maxDocumentSize());
+        }
+        final var decoder = new Decoder(cbor.duplicate().order(ByteOrder.BIG_ENDIAN), limits);
+        final var value = decoder.decode();
+        cbor.position(decoder.index);
+        return value;
+    }
+
+    // The shortest string a reference is written for, given the index it would get; references are never longer
+    // than the string itself this way. The decoder counts the same strings.
+    private static boolean isShareable(final int length, final int index) {
+        return length >= (index < 24 ? 3 : index < 256 ? 4 : index < 65536 ? 5 : 7);
+    }
+
+    private static final class Encoder {
+        private byte[] bytes = new byte[256];
+        private int size;
+        // with shareStrings, the index of each text string that can be referenced
+        private final Map<String, Integer> strings;
+        private int stringCount;
+
+        Encoder(final boolean shareStrings) {
+            strings = shareStrings ? new HashMap<>() : null;
+            if (shareStrings) {
+                head(TAG, TAG_STRINGREF_NAMESPACE);
+            }
+        }
+
+        void value(final JSONElement element) {
+            switch (element) {
+                case null -> put(NULL);
+                case JSONNull nullValue -> put(NULL);
+                case JSONBoolean bool -> put(bool.value() ? TRUE : FALSE);
+                case JSONNumber num -> number(num);
+                case JSONString str -> text(str.value());
+                case JSONArray arr when arr.value() instanceof PackedNumberList.Longs longs -> {
+                    head(ARRAY, longs.size());
+                    longs.longStream().forEach(this::integer);
+                }
+                case JSONArray arr when arr.value() instanceof PackedNumberList.Doubles doubles -> {
+                    head(ARRAY, doubles.size());
+                    doubles.doubleStream().forEach(this::floating);
+                }
+                case JSONArray arr -> {
+                    head(ARRAY, arr.value().size());
+                    for (final var value : arr.value()) {
+                        value(value);
+                    }
+                }
+                case JSONObject obj -> {
+                    head(MAP, obj.value().size());
+                    for (final var entry : obj.value().entrySet()) {
+                        text(entry.getKey());
+                        value(entry.getValue());
+                    }
+                }
+            }
+        }
+
+        private void number(final JSONNumber num) {
+            if (num.isLong()) {
+                integer(num.longValue());
+                return;
+            }
+            if (num.isDouble()) {
+                floating(num.doubleValue());
+                return;
+            }
+            final var value = num.value();
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                integer(value.longValue());
+            } else if (value instanceof Double || value instanceof Float) {
+                floating(value.doubleValue());
+            } else if (value instanceof BigInteger big) {
+                bigInteger(big);
+            } else if (value instanceof BigDecimal decimal) {
+                decimal(decimal);
+            } else {
+                // some other Number, kept as exactly as its text form allows
+                final BigDecimal decimal;
+                try {
+                    decimal = new BigDecimal(value.toString());
+                } catch (final NumberFormatException e) {
+                    throw new IllegalArgumentException("Cannot encode the number " + value, e);
+                }
+                if (decimal.scale() == 0) {
+                    bigInteger(decimal.unscaledValue());
+                } else {
+                    decimal(decimal);
+                }
+            }
+        }
+
+        private void integer(final long value) {
+            if (value >= 0) {
+                head(UNSIGNED, value);
+            } else {
+                head(NEGATIVE, ~value);
+            }
+        }
+
+        private void bigInteger(final BigInteger value) {
+            if (value.bitLength() < Long.SIZE) {
+                integer(value.longValue());
+                return;
+            }
+            // -1 - n for negative numbers, which is what both the negative integers and bignums hold
+            final var magnitude = value.signum() < 0 ? value.not() : value;
+            final var major = value.signum() < 0 ? NEGATIVE : UNSIGNED;
+            if (magnitude.bitLength() <= Long.SIZE) {
+                head(major, magnitude.longValue());
+                return;
+            }
+            head(TAG, major == UNSIGNED ? TAG_POSITIVE_BIGNUM : TAG_NEGATIVE_BIGNUM);
+            final var content = magnitude.toByteArray();
+            // toByteArray() adds a sign byte when the top bit is set
+            final var start = content[0] == 0 ? 1 : 0;
+            head(BYTES, content.length - start);
+            put(content, start, content.length - start);
+            if (strings != null && isShareable(content.length - start, stringCount)) {
+                // the decoder counts byte strings too, but they are never referenced
+                stringCount++;
+            }
+        }
+
+        private void decimal(final BigDecimal value) {
+            head(TAG, TAG_DECIMAL);
+            head(ARRAY, 2);
+            integer(-(long) value.scale());
+            bigInteger(value.unscaledValue());
+        }
+
+        private void floating(final double value) {
+            final var single = (float) value;
+            if (single == value || Double.isNaN(value)) {
+                final var half = Float.floatToFloat16(single);
+                if (Float.float16ToFloat(half) == single || Double.isNaN(value)) {
+                    put(HALF);
+                    putBits(half, 2);
+                } else {
+                    put(SINGLE);
+                    putBits(Float.floatToIntBits(single), 4);
+                }
+            } else {
+                put(DOUBLE);
+                putBits(Double.doubleToLongBits(value), 8);
+            }
+        }
+
+        private void text(final String value) {
+            if (strings != null) {
+                final var index = strings.get(value);
+                if (index != null) {
+                    head(TAG, TAG_STRINGREF);
+                    head(UNSIGNED, index);
+                    return;
+                }
+            }
+            final var length = value.length();
+            var isAscii = true;
+            for (var idx = 0; idx < length && isAscii; idx++) {
+                isAscii = value.charAt(idx) < 0x80;
+            }
+            final int byteLength;
+            if (isAscii) {
+                head(TEXT, length);
+                ensure(length);
+                for (var idx = 0; idx < length; idx++) {
+                    bytes[size++] = (byte) value.charAt(idx);
+                }
+                byteLength = length;
+            } else {
+                final var utf8 = value.getBytes(StandardCharsets.UTF_8);
+                head(TEXT, utf8.length);
+                put(utf8, 0, utf8.length);
+                byteLength = utf8.length;
+            }
+            if (strings != null && isShareable(byteLength, stringCount)) {
+                strings.put(value, stringCount++);
+            }
+        }
+
+        // the initial byte of an item and its argument in as few bytes as it fits
+        private void head(final int major, final long argument) {
+            final var initial = major << 5;
+            if (argument >= 0 && argument < 24) {
+                put(initial | (int) argument);
+            } else if (argument >= 0 && argument <= 0xff) {
+                put(initial | 24);
+                putBits(argument, 1);
+            } else if (argument >= 0 && argument <= 0xffff) {
+                put(initial | 25);
+                putBits(argument, 2);
+            } else if (argument >= 0 && argument <= 0xffffffffL) {
+                put(initial | 26);
+                putBits(argument, 4);
+            } else {
+                put(initial | 27);
+                putBits(argument, 8);
+            }
+        }
+
+        private void put(final int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        private void put(final byte[] values, final int start, final int length) {
+            ensure(length);
+            System.arraycopy(values, start, bytes, size, length);
+            size += length;
+        }
+
+        // the low count bytes of the value, big-endian
+        private void putBits(final long value, final int count) {
+            ensure(count);
+            for (var idx = count - 1; idx >= 0; idx--) {
+                bytes[size++] = (byte) (value >>> (idx * 8));
+            }
+        }
+
+        private void ensure(final int count) {
+            if (bytes.length - size < count) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + count));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        void writeTo(final OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+    }
+
+    // Reads the items without recursion, containers that are being filled are kept on a stack like the parsers do.
+    private static final class Decoder {
+        private final ByteBuffer cbor;
+        private final int end;
+        private final JSONLimits limits;
+        // the containers being filled and their builders, like a parser keeps them
+        private final ParserBuffers buffers = new ParserBuffers(new KeyCache());
+        int index;
+
+        // how many items (pairs for maps) each open container still has to come, or -1 until a break
+        private long[] remaining = {};
+        // how many stringref namespaces each open container opened, they end with it
+        private int[] openedNamespaces = {};
+        // the strings that can be referenced in each open namespace, innermost last
+        private final ArrayList<ArrayList<Object>> namespaces = new ArrayList<>();
+
+        // the head of the last item read
+        private int major;
+        private int info;
+        private long argument;
+
+        Decoder(final ByteBuffer cbor, final JSONLimits limits) {
+            this.cbor = cbor;
+            this.end = cbor.limit();
+            this.limits = limits;
+            this.index = cbor.position();
+        }
+
+        JSONElement decode() {
+            var depth = 0;
+            while (true) {
+                JSONElement value;
+                if (depth > 0 && isEnd(depth - 1)) {
+                    depth--;
+                    if (buffers.open[depth] instanceof ArrayBuilder array) {
+                        value = array.build();
+                        array.reset();
+                    } else {
+                        final var object = (ObjectBuilder) buffers.open[depth];
+                        value = object.build();
+                        object.reset();
+                    }
+                    buffers.open[depth] = null;
+                    closeNamespaces(openedNamespaces[depth]);
+                } else if (depth > 0 && buffers.open[depth - 1] instanceof ObjectBuilder && buffers.pendingKeys[depth - 1] == null) {
+                    buffers.pendingKeys[depth - 1] = key();
+                    continue;
+                } else {
+                    value = item(depth);
+                    if (value == null) {
+                        depth++;
+                        continue;
+                    }
+                }
+
+                if (depth == 0) {
+                    return value;
+                }
+                final var frame = depth - 1;
+                if (buffers.open[frame] instanceof ArrayBuilder array) {
+                    array.add(value);
+                } else {
+                    ((ObjectBuilder) buffers.open[frame]).put(buffers.pendingKeys[frame], value);
+                    buffers.pendingKeys[frame] = null;
+                }
+                if (remaining[frame] > 0) {
+                    remaining[frame]--;
+                }
+            }
+        }
+
+        private boolean isEnd(final int frame) {
+            if (remaining[frame] >= 0) {
+                return remaining[frame] == 0;
+            }
+            if (index < end && (cbor.get(index) & 0xff) == BREAK) {
+                if (buffers.pendingKeys[frame] != null) {
+                    throw error("Map ends without a value for its last key");
+                }
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        // Returns the next value, or null when it is a container, which is then pushed at depth.
+        private JSONElement item(final int depth) {
+            final var start = index;
+            head();
+            var opened = 0;
+            while (major == TAG) {
+                if (argument == TAG_STRINGREF_NAMESPACE) {
+                    namespaces.add(new ArrayList<>());
+                    opened++;
+                } else if (argument == TAG_STRINGREF) {
+                    final var value = reference();
+                    closeNamespaces(opened);
+                    return new JSONString(value instanceof String text ? text : base64((byte[]) value));
+                } else if (argument == TAG_POSITIVE_BIGNUM || argument == TAG_NEGATIVE_BIGNUM) {
+                    final var isNegative = argument == TAG_NEGATIVE_BIGNUM;
+                    final var value = number(bignum(isNegative));
+                    closeNamespaces(opened);
+                    return value;
+                } else if (argument == TAG_DECIMAL) {
+                    final var value = decimal();
+                    closeNamespaces(opened);
+                    return value;
+                }
+                // any other tag only adds meaning JSON has no place for
+                head();
+            }
+
+            final JSONElement value = switch (major) {
+                case UNSIGNED -> argument >= 0
+                    ? JSONNumber.of(argument)
+                    : new JSONNumber(new BigInteger(Long.toUnsignedString(argument)));
+                case NEGATIVE -> argument >= 0
+                    ? JSONNumber.of(-1 - argument)
+                    : new JSONNumber(new BigInteger(Long.toUnsignedString(argument)).not());
+                case BYTES -> new JSONString(base64(bytes()));
+                case TEXT -> new JSONString(text(false));
+                case ARRAY, MAP -> {
+                    open(depth, start, opened);
+                    yield null;
+                }
+                // floats and simple values
+                default -> simple();
+            };
+            if (value != null) {
+                closeNamespaces(opened);
+            }
+            return value;
+        }
+
+        private void open(final int depth, final int start, final int opened) {
+            if (depth >= limits.maxDepth()) {
+                throw limits.depthExceeded(start);
+            }
+            if (info != INDEFINITE && Long.compareUnsigned(argument, end - index) > 0) {
+                // every item takes at least a byte
+                throw error("Container longer than the input");
+            }
+            if (depth == buffers.open.length) {
+                buffers.grow();
+                remaining = Arrays.copyOf(remaining, buffers.open.length);
+                openedNamespaces = Arrays.copyOf(openedNamespaces, buffers.open.length);
+            }
+            buffers.open[depth] = major == ARRAY ? buffers.array(depth) : buffers.object(depth);
+            remaining[depth] = info == INDEFINITE ? -1 : argument;
+            openedNamespaces[depth] = opened;
+        }
+
+        private String key() {
+            head();
+            while (major == TAG) {
+                if (argument == TAG_STRINGREF) {
+                    if (reference() instanceof String text) {
+                        return text;
+                    }
+                    throw error("Object keys must be text");
+                }
+                head();
+            }
+            if (major != TEXT) {
+                throw error("Object keys must be text");
+            }
+            return text(true);
+        }
+
+        private JSONElement simple() {
+            return switch (info) {
+                case 20 -> new JSONBoolean(false);
+                case 21 -> new JSONBoolean(true);
+                // null and undefined
+                case 22, 23 -> JSONNull.INSTANCE;
+                case 25 -> JSONNumber.of(Float.float16ToFloat((short) argument));
+                case 26 -> JSONNumber.of(Float.intBitsToFloat((int) argument));
+                case 27 -> JSONNumber.of(Double.longBitsToDouble(argument));
+                case INDEFINITE -> throw error("Unexpected break");
+                default -> throw error("Simple value " + (info == 24 ? argument : info) + " has no JSON equivalent");
+            };
+        }
+
+        private String text(final boolean isKey) {
+            if (info == INDEFINITE) {
+                final var chunks = new ByteArrayOutputStream();
+                for (var chunk = chunk(TEXT); chunk != null; chunk = chunk(TEXT)) {
+                    chunks.writeBytes(chunk);
+                }
+                return chunks.toString(StandardCharsets.UTF_8);
+            }
+            final var start = index;
+            final var length = length();
+            var isAscii = true;
+            for (var idx = start; idx < index && isAscii; idx++) {
+                isAscii = cbor.get(idx) >= 0;
+            }
+            final String value;
+            if (isAscii) {
+                value = isKey ? buffers.keys.intern(cbor, start, index) : ByteParser.ascii(cbor, start, index);
+            } else if (cbor.hasArray()) {
+                value = new String(cbor.array(), cbor.arrayOffset() + start, length, StandardCharsets.UTF_8);
+            } else {
+                final var utf8 = new byte[length];
+                cbor.get(start, utf8);
+                value = new String(utf8, StandardCharsets.UTF_8);
+            }
+            share(value, length);
+            return value;
+        }
+
+        private byte[] bytes() {
+            if (info == INDEFINITE) {
+                final var chunks = new ByteArrayOutputStream();
+                for (var chunk = chunk(BYTES); chunk != null; chunk = chunk(BYTES)) {
+                    chunks.writeBytes(chunk);
+                }
+                return chunks.toByteArray();
+            }
+            final var start = index;
+            final var length = length();
+            final var value = new byte[length];
+            cbor.get(start, value);
+            share(value, length);
+            return value;
+        }
+
+        // the next chunk of an indefinite length string, or null at its break
+        private byte[] chunk(final int type) {
+            if (index < end && (cbor.get(index) & 0xff) == BREAK) {
+                index++;
+                return null;
+            }
+            head();
+            if (major != type || info == INDEFINITE) {
+                throw error("Malformed chunk of an indefinite length string");
+            }
+            final var start = index;
+            final var value = new byte[length()];
+            cbor.get(start, value);
+            return value;
+        }
+
+        // skips over the content of a definite length string and returns its length
+        private int length() {
+            if (Long.compareUnsigned(argument, end - index) > 0) {
+                throw error("String longer than the input");
+            }
+            if (argument > limits.maxStringLength()) {
+                throw limits.stringLengthExceeded(index);
+            }
+            index += (int) argument;
+            return (int) argument;
+        }
+
+        private void share(final Object value, final int length) {
+            if (!namespaces.isEmpty()) {
+                final var strings = namespaces.get(namespaces.size() - 1);
+                if (isShareable(length, strings.size())) {
+                    strings.add(value);
+                }
+            }
+        }
+
+        private Object reference() {
+            head();
+            if (major != UNSIGNED) {
+                throw error("Malformed string reference");
+            }
+            if (namespaces.isEmpty()) {
+                throw error("String reference outside of a namespace");
+            }
+            final var strings = namespaces.get(namespaces.size() - 1);
+            if (argument < 0 || argument >= strings.size()) {
+                throw error("Reference to unknown string " + Long.toUnsignedString(argument));
+            }
+            return strings.get((int) argument);
+        }
+
+        private void closeNamespaces(final int count) {
+            for (var idx = 0; idx < count; idx++) {
+                namespaces.remove(namespaces.size() - 1);
+            }
+        }
+
+        private BigInteger bignum(final boolean isNegative) {
+            head();
+            final byte[] content;
+            if (major == TAG && argument == TAG_STRINGREF && reference() instanceof byte[] referenced) {
+                content = referenced;
+            } else if (major == BYTES) {
+                content = bytes();
+            } else {
+                throw error("Malformed bignum");
+            }
+            final var magnitude = new BigInteger(1, content);
+            return isNegative ? magnitude.not() : magnitude;
+        }
+
+        // [exponent, mantissa], the value is mantissa * 10^exponent
+        private JSONElement decimal() {
+            head();
+            if (major != ARRAY || argument != 2) {
+                throw error("Malformed decimal fraction");
+            }
+            head();
+            if ((major != UNSIGNED && major != NEGATIVE) || argument < 0) {
+                throw error("Malformed decimal fraction exponent");
+            }
+            final var exponent = major == UNSIGNED ? argument : -1 - argument;
+            if (-exponent < Integer.MIN_VALUE || -exponent > Integer.MAX_VALUE) {
+                throw error("Decimal fraction exponent out of range");
+            }
+            head();
+            final BigInteger mantissa;
+            if (major == UNSIGNED) {
+                mantissa = new BigInteger(Long.toUnsignedString(argument));
+            } else if (major == NEGATIVE) {
+                mantissa = new BigInteger(Long.toUnsignedString(argument)).not();
+            } else if (major == TAG && (argument == TAG_POSITIVE_BIGNUM || argument == TAG_NEGATIVE_BIGNUM)) {
+                mantissa = bignum(argument == TAG_NEGATIVE_BIGNUM);
+            } else {
+                throw error("Malformed decimal fraction mantissa");
+            }
+            return new JSONNumber(new BigDecimal(mantissa, (int) -exponent));
+        }
+
+        // bignums that fit a long decode like the parsers read them
+        private static JSONNumber number(final BigInteger value) {
+            return value.bitLength() < Long.SIZE ? JSONNumber.of(value.longValue()) : new JSONNumber(value);
+        }
+
+        private static String base64(final byte[] value) {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+        }
+
+        private void head() {
+            if (index >= end) {
+                throw error("Unexpected end of input");
+            }
+            final var initial = cbor.get(index++) & 0xff;
+            major = initial >>> 5;
+            info = initial & 31;
+            argument = switch (info) {
+                case 24 -> bits(1);
+                case 25 -> bits(2);
+                case 26 -> bits(4);
+                case 27 -> bits(8);
+                case 28, 29, 30 -> throw error("Reserved additional information " + info);
+                case INDEFINITE -> {
+                    if (major == UNSIGNED || major == NEGATIVE || major == TAG) {
+                        throw error("Indefinite length for a major type that has none");
+                    }
+                    yield 0;
+                }
+                default -> info;
+            };
+        }
+
+        private long bits(final int count) {
+            if (end - index < count) {
+                index = end;
+                throw error("Unexpected end of input");
+            }
+            final long value = switch (count) {
+                case 1 -> cbor.get(index) & 0xffL;
+                case 2 -> cbor.getShort(index) & 0xffffL;
+                case 4 -> cbor.getInt(index) & 0xffffffffL;
+                default -> cbor.getLong(index);
+            };
+            index += count;
+            return value;
+        }
+
+        private JSONException error(final String message) {
+            return new JSONException(message, index);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package loadingbg.javason;
+
+import java.util.*;
+
+// The JSONCodec providers, looked up by the exact class of a value. They are loaded on first use.
+final class Codecs {
+    private static final Map<Class<?>, JSONCodec<?>> CODECS = load();
+
+    private Codecs() {}
+
+    // Returns null if no codec handles the type.
+    @SuppressWarnings("unchecked")
+    static <T> JSONCodec<T> of(final Class<T> type) {
+        return (JSONCodec<T>) CODECS.get(type);
+    }
+
+    private static Map<Class<?>, JSONCodec<?>> load() {
+        final var codecs = new HashMap<Class<?>, JSONCodec<?>>();
+        for (final var codec : ServiceLoader.load(JSONCodec.class)) {
+            // the first one on the class (or module) path wins
+            codecs.putIfAbsent(codec.type(), codec);
+        }
+        return Map.copyOf(codecs);
+    }
+}
@@ -0,0 +1,247 @@
+package loadingbg.javason;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.util.function.*;
+
+sealed interface FieldAccessor {
+    JSONElement toJSON(Object obj);
+
+    void write(Object obj, JSONWriter writer) throws IOException;
+
+    record BooleanAccessor(Predicate<Object> getter) implements FieldAccessor {
+        @Override
+        public JSONElement toJSON(final Object obj) {
+            return new JSONBoolean(getter.test(obj));
+        }
+
+        @Override
+        public void write(final Object obj, final JSONWriter writer) throws IOException {
+            final boolean value;
+            try {
+                value = getter.test(obj);
+            } catch (final Exception e) {
+                writer.nullValue();
+                return;
+            }
+            writer.value(value);
+        }
+    }
+
+    record IntAccessor(ToIntFunction<Object> getter, Class<?> type) implements FieldAccessor {
+        @Override
+        public JSONElement toJSON(final Object obj) {
+            final var value = getter.applyAsInt(obj);
+            if (type == byte.class) {
+                return new JSONNumber((byte) value);
+            }
+            if (type == short.class) {
+                return new JSONNumber((short) value);
+            }
+            return new JSONNumber(value);
+        }
+
+        @Override
+        public void write(final Object obj, final JSONWriter writer) throws IOException {
+            final int value;
+            try {
+                value = getter.applyAsInt(obj);
+            } catch (final Exception e) {
+                writer.nullValue();
+                return;
+            }
+            writer.value(value);
+        }
+    }
+
+    record LongAccessor(ToLongFunction<Object> getter) implements FieldAccessor {
+        @Override
+        public JSONElement toJSON(final Object obj) {
+            return new JSONNumber(getter.applyAsLong(obj));
+        }
+
+        @Override
+        public void write(final Object obj, final JSONWriter writer) throws IOException {
+            final long value;
+            try {
+                value = getter.applyAsLong(obj);
+            } catch (final Exception e) {
+                writer.nullValue();
+                return;
+            }
+            writer.value(value);
+        }
+    }
+
+    record DoubleAccessor(ToDoubleFunction<Object> getter, Class<?> type) implements FieldAccessor {
+        @Override
+        public JSONElement toJSON(final Object obj) {
+            final var value = getter.applyAsDouble(obj);
+            return type == float.class ? new JSONNumber((float) value) : new JSONNumber(value);
+        }
+
+        @Override
+        public void write(final Object obj, final JSONWriter writer) throws IOException {
+            final double value;
+            try {
+                value = getter.applyAsDouble(obj);
+            } catch (final Exception e) {
+                writer.nullValue();
+                return;
+            }
+            if (type == float.class) {
+                writer.value((float) value);
+            } else {
+                writer.value(value);
+            }
+        }
+    }
+
+    record ObjectAccessor(Function<Object, Object> getter) implements FieldAccessor {
+        @Override
+        public JSONElement toJSON(final Object obj) {
+            return JavaSON.toJSON(getter.apply(obj));
+        }
+
+        @Override
+        public void write(final Object obj, final JSONWriter writer) throws IOException {
+            final Object value;
+            try {
+                value = getter.apply(obj);
+            } catch (final Exception e) {
+                writer.nullValue();
+                return;
+            }
+            writer.write(value);
+        }
+    }
+
+    // Returns null if the method can't be accessed from this module at all.
+    static FieldAccessor of(final Method method) {
+        final MethodHandle handle;
+        MethodHandles.Lookup lookup = null;
+        try {
+            // needs the declaring package to be open to this module (always true on the class path)
+            lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+        } catch (final IllegalAccessException | SecurityException e) {
+            method.trySetAccessible();
+        }
+        try {
+            handle = (lookup != null ? lookup : MethodHandles.lookup()).unreflect(method);
+        } catch (final IllegalAccessException e) {
+            return null;
+        }
+
+        final var returnType = method.getReturnType();
+        if (lookup != null && !Modifier.isStatic(method.getModifiers())) {
+            try {
+                return generate(lookup, handle, returnType);
+            } catch (final LambdaConversionException e) {
+                // LambdaMetafactory needs full privilege access, which a lookup into another module doesn't have
+            }
+        }
+        final var adapted = Modifier.isStatic(method.getModifiers())
+            ? MethodHandles.dropArguments(handle, 0, Object.class)
+            : handle;
+        return bind(adapted, returnType);
+    }
+
+    private static FieldAccessor generate(final MethodHandles.Lookup lookup, final MethodHandle handle,
+                                          final Class<?> returnType) throws LambdaConversionException {
+        final var owner = handle.type().parameterType(0);
+        if (returnType == boolean.class) {
+            return new BooleanAccessor(metafactory(lookup, handle, Predicate.class, "test", boolean.class, owner));
+        }
+        if (returnType == byte.class || returnType == short.class || returnType == int.class) {
+            return new IntAccessor(metafactory(lookup, handle, ToIntFunction.class, "applyAsInt", int.class, owner), returnType);
+        }
+        if (returnType == long.class) {
+            return new LongAccessor(metafactory(lookup, handle, ToLongFunction.class, "applyAsLong", long.class, owner));
+        }
+        if (returnType == float.class || returnType == double.class) {
+            return new DoubleAccessor(metafactory(lookup, handle, ToDoubleFunction.class, "applyAsDouble", double.class, owner), returnType);
+        }
+        return new ObjectAccessor(metafactory(lookup, handle, Function.class, "apply", Object.class, owner));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T metafactory(final MethodHandles.Lookup lookup, final MethodHandle handle, final Class<?> functionalInterface,
+                                     final String name, final Class<?> erasedReturn, final Class<?> owner)
+        throws LambdaConversionException {
+        final var returnType = erasedReturn == Object.class ? handle.type().wrap().returnType() : erasedReturn;
+        final var site = LambdaMetafactory.metafactory(
+            lookup,
+            name,
+            MethodType.methodType(functionalInterface),
+            MethodType.methodType(erasedReturn, Object.class),
+            handle,
+            MethodType.methodType(returnType, owner));
+        try {
+            return (T) site.getTarget().invoke();
+        } catch (final Throwable e) {
+            throw new LambdaConversionException("Failed to create accessor for " + handle, e);
+        }
+    }
+
+    private static FieldAccessor bind(final MethodHandle handle, final Class<?> returnType) {
+        if (returnType == boolean.class) {
+            final var exact = handle.asType(MethodType.methodType(boolean.class, Object.class));
+            return new BooleanAccessor(obj -> {
+                try {
+                    return (boolean) exact.invokeExact(obj);
+                } catch (final Throwable e) {
+                    throw rethrow(e);
+                }
+            });
+        }
+        if (returnType == byte.class || returnType == short.class || returnType == int.class) {
+            final var exact = handle.asType(MethodType.methodType(int.class, Object.class));
+            return new IntAccessor(obj -> {
+                try {
+                    return (int) exact.invokeExact(obj);
+                } catch (final Throwable e) {
+                    throw rethrow(e);
+                }
+            }, returnType);
+        }
+        if (returnType == long.class) {
+            final var exact = handle.asType(MethodType.methodType(long.class, Object.class));
+            return new LongAccessor(obj -> {
+                try {
+                    return (long) exact.invokeExact(obj);
+                } catch (final Throwable e) {
+                    throw rethrow(e);
+                }
+            });
+        }
+        if (returnType == float.class || returnType == double.class) {
+            final var exact = handle.asType(MethodType.methodType(double.class, Object.class));
+            return new DoubleAccessor(obj -> {
+                try {
+                    return (double) exact.invokeExact(obj);
+                } catch (final Throwable e) {
+                    throw rethrow(e);
+                }
+            }, returnType);
+        }
+        final var exact = handle.asType(MethodType.methodType(Object.class, Object.class));
+        return new ObjectAccessor(obj -> {
+            try {
+                return exact.invokeExact(obj);
+            } catch (final Throwable e) {
+                throw rethrow(e);
+            }
+        });
+    }
+
+    private static RuntimeException rethrow(final Throwable e) {
+        if (e instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (e instanceof Error error) {
+            throw error;
+        }
+        throw new UndeclaredThrowableException(e);
+    }
+}
@@ -66,9 +66,29 @@ public record JSONArray(List<JSONElement> value) implements JSONElement {
 
     @Override
     public String toJSONString() {
-        return value.stream()
-            .map(JSONElement::toJSONString)
-            .collect(Collectors.joining(",", "[", "]"));
+        return JSONWriter.toJSONString(this);
+    }
+
+    public LongStream longStream() {
+        if (value instanceof PackedNumberList packed) {
+            return packed.longStream();
+        }
+        return IntStream.range(0, value.size()).mapToLong(idx -> number(idx).longValue());
+    }
+
+    public DoubleStream doubleStream() {
+        if (value instanceof PackedNumberList packed) {
+            return packed.doubleStream();
+        }
+        return IntStream.range(0, value.size()).mapToDouble(idx -> number(idx).doubleValue());
+    }
+
+    public long[] toLongArray() {
+        return longStream().toArray();
+    }
+
+    public double[] toDoubleArray() {
+        return doubleStream().toArray();
     }
 
     public Optional<JSONElement> get(final int index) {
@@ -103,6 +123,47 @@ public record JSONArray(List<JSONElement> value) implements JSONElement {
         return dig(index, subkeys).flatMap(JSONElement::asObject);
     }
 
+    // The updates return new arrays that share everything but the changed path with this one; the first update
+    // of an array copies its list once, into a persistent vector.
+    public JSONArray set(final int index, final JSONElement element) {
+        return new JSONArray(PersistentVector.of(value).with(index, Objects.requireNonNull(element)));
+    }
+
+    public JSONArray append(final JSONElement element) {
+        return new JSONArray(PersistentVector.of(value).append(Objects.requireNonNull(element)));
+    }
+
+    // The path holds String keys and Integer indexes like the subkeys of dig(); missing objects and arrays along
+    // it are created, and an index one past the end of an array appends.
+    public JSONArray withIn(final List<?> path, final JSONElement element) {
+        if (path.isEmpty() || !(path.get(0) instanceof Integer)) {
+            throw new IllegalArgumentException("Path " + path + " doesn't start with an index");
+        }
+        return withInInternal(path, 0, element);
+    }
+
+    JSONArray withInInternal(final List<?> path, final int pathIndex, final JSONElement element) {
+        final int index = (Integer) path.get(pathIndex);
+        Objects.checkIndex(index, value.size() + 1);
+        if (pathIndex == path.size() - 1) {
+            return index == value.size() ? append(element) : set(index, element);
+        }
+
+        final var subvalue = index == value.size() ? null : value.get(index);
+        final var next = path.get(pathIndex + 1);
+        final JSONElement updated;
+        if (next instanceof Integer && (subvalue == null || subvalue instanceof JSONArray)) {
+            final var array = subvalue == null ? new JSONArray(PersistentVector.empty()) : (JSONArray) subvalue;
+            updated = array.withInInternal(path, pathIndex + 1, element);
+        } else if (next instanceof String && (subvalue == null || subvalue instanceof JSONObject)) {
+            final var object = subvalue == null ? new JSONObject(PersistentMap.of(Map.of())) : (JSONObject) subvalue;
+            updated = object.withInInternal(path, pathIndex + 1, element);
+        } else {
+            throw new IllegalArgumentException("Path " + path + " doesn't match the element at " + path.subList(0, pathIndex + 1));
+        }
+        return index == value.size() ? append(updated) : set(index, updated);
+    }
+
     Optional<JSONElement> digInternal(final int subkeysIndex, final int index, final Object... subkeys) {
         if (index >= value.size()) {
             return Optional.empty();
@@ -121,4 +182,11 @@ public record JSONArray(List<JSONElement> value) implements JSONElement {
         }
         return Optional.empty();
     }
+
+    private JSONNumber number(final int index) {
+        if (value.get(index) instanceof JSONNumber num) {
+            return num;
+        }
+        throw new IllegalStateException("Element " + index + " is not a number");
+    }
 }
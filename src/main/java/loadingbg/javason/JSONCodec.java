@@ -0,0 +1,17 @@
+package loadingbg.javason;
+
+import java.io.*;
+
+// Serializes and binds exactly one type without reflection. Codecs are found with ServiceLoader (listed in
+// META-INF/services/loadingbg.javason.JSONCodec, or provided by a module) and take the place of the reflective
+// @JSONField handling for their type(); the javason-processor annotation processor generates them.
+public interface JSONCodec<T> {
+    Class<T> type();
+
+    JSONElement toJSON(T value);
+
+    void write(T value, JSONWriter writer) throws IOException;
+
+    // The reader is at a value that isn't null.
+    T read(JSONReader reader) throws IOException;
+}
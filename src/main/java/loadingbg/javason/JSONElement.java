@@ -1,5 +1,6 @@
 package loadingbg.javason;
 
+import java.io.*;
 import java.util.*;
 
 public sealed interface JSONElement permits JSONNull, JSONBoolean, JSONNumber, JSONString, JSONArray, JSONObject {
@@ -18,4 +19,17 @@ public sealed interface JSONElement permits JSONNull, JSONBoolean, JSONNumber, J
     Optional<JSONObject> asObject();
 
     String toJSONString();
+
+    default void writeTo(final Appendable out) throws IOException {
+        final var writer = JSONWriter.pooled(out);
+        try {
+            writer.value(this).flush();
+        } finally {
+            writer.release();
+        }
+    }
+
+    default void writeTo(final OutputStream out) throws IOException {
+        new JSONWriter(out).value(this).flush();
+    }
 }
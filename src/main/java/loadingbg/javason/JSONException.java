@@ -0,0 +1,16 @@
+package loadingbg.javason;
+
+public final class JSONException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long position;
+
+    public JSONException(final String message, final long position) {
+        super(message + " at position " + position);
+        this.position = position;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+}
@@ -2,7 +2,7 @@ package loadingbg.javason;
 
 import java.lang.annotation.*;
 
-@Target({ ElementType.METHOD, ElementType.RECORD_COMPONENT })
+@Target({ ElementType.METHOD, ElementType.RECORD_COMPONENT, ElementType.PARAMETER })
 @Retention(RetentionPolicy.RUNTIME)
 public @interface JSONField {
     String value();
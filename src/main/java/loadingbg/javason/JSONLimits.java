@@ -0,0 +1,49 @@
+package loadingbg.javason;
+
+// Bounds on what a parser accepts, so untrusted input can't make it do unbounded work. Going over one throws
+// JSONException at the offending position. Depth counts the open arrays and objects, lengths count the chars of
+// the source text with escapes as written (bytes where the parser reads bytes rather than a String or a Reader),
+// without the quotes of a string.
+public record JSONLimits(int maxDepth, long maxDocumentSize, int maxStringLength, int maxNumberLength) {
+    // what the methods that don't take limits use
+    public static final JSONLimits DEFAULT = new JSONLimits(1000, Long.MAX_VALUE, 20_000_000, 1000);
+    public static final JSONLimits NONE = new JSONLimits(Integer.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    public JSONLimits {
+        if (maxDepth <= 0 || maxDocumentSize <= 0 || maxStringLength <= 0 || maxNumberLength <= 0) {
+            throw new IllegalArgumentException("Limits must be positive");
+        }
+    }
+
+    public JSONLimits withMaxDepth(final int maxDepth) {
+        return new JSONLimits(maxDepth, maxDocumentSize, maxStringLength, maxNumberLength);
+    }
+
+    public JSONLimits withMaxDocumentSize(final long maxDocumentSize) {
+        return new JSONLimits(maxDepth, maxDocumentSize, maxStringLength, maxNumberLength);
+    }
+
+    public JSONLimits withMaxStringLength(final int maxStringLength) {
+        return new JSONLimits(maxDepth, maxDocumentSize, maxStringLength, maxNumberLength);
+    }
+
+    public JSONLimits withMaxNumberLength(final int maxNumberLength) {
+        return new JSONLimits(maxDepth, maxDocumentSize, maxStringLength, maxNumberLength);
+    }
+
+    JSONException depthExceeded(final long position) {
+        return new JSONException("Nesting deeper than " + maxDepth + " levels", position);
+    }
+
+    JSONException documentSizeExceeded(final long position) {
+        return new JSONException("Document longer than " + maxDocumentSize, position);
+    }
+
+    JSONException stringLengthExceeded(final long position) {
+        return new JSONException("String longer than " + maxStringLength, position);
+    }
+
+    JSONException numberLengthExceeded(final long position) {
+        return new JSONException("Number longer than " + maxNumberLength, position);
+    }
+}
@@ -1,8 +1,87 @@
 package loadingbg.javason;
 
+import java.io.*;
 import java.util.*;
 
-public record JSONNumber(Number value) implements JSONElement {
+public final class JSONNumber implements JSONElement {
+    private static final byte BOXED = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+
+    private final byte kind;
+    // the long value, or the raw bits of the double value
+    private final long bits;
+    private final Number value;
+
+    public JSONNumber(final Number value) {
+        this.kind = BOXED;
+        this.bits = 0;
+        this.value = value;
+    }
+
+    private JSONNumber(final byte kind, final long bits) {
+        this.kind = kind;
+        this.bits = bits;
+        this.value = null;
+    }
+
+    // value() narrows to the smallest of Byte, Short, Integer and Long that holds the value.
+    static JSONNumber of(final long value) {
+        return new JSONNumber(LONG, value);
+    }
+
+    // value() narrows to Float when that is exact.
+    static JSONNumber of(final double value) {
+        return new JSONNumber(DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    public Number value() {
+        return switch (kind) {
+            case LONG -> {
+                if ((byte) bits == bits) {
+                    yield (byte) bits;
+                }
+                if ((short) bits == bits) {
+                    yield (short) bits;
+                }
+                if ((int) bits == bits) {
+                    yield (int) bits;
+                }
+                yield bits;
+            }
+            case DOUBLE -> {
+                final var doubleValue = Double.longBitsToDouble(bits);
+                final var floatValue = (float) doubleValue;
+                yield floatValue == doubleValue ? (Number) floatValue : (Number) doubleValue;
+            }
+            default -> value;
+        };
+    }
+
+    public long longValue() {
+        return switch (kind) {
+            case LONG -> bits;
+            case DOUBLE -> (long) Double.longBitsToDouble(bits);
+            default -> value.longValue();
+        };
+    }
+
+    public double doubleValue() {
+        return switch (kind) {
+            case LONG -> bits;
+            case DOUBLE -> Double.longBitsToDouble(bits);
+            default -> value.doubleValue();
+        };
+    }
+
+    boolean isLong() {
+        return kind == LONG;
+    }
+
+    boolean isDouble() {
+        return kind == DOUBLE;
+    }
+
     @Override
     public boolean isNull() {
         return false;
@@ -65,6 +144,43 @@ public record JSONNumber(Number value) implements JSONElement {
 
     @Override
     public String toJSONString() {
-        return value.toString();
+        return switch (kind) {
+            case LONG -> Long.toString(bits);
+            // not Float.toString even when value() narrows: a float's shortest digits may not be the double's
+            case DOUBLE -> Double.toString(Double.longBitsToDouble(bits));
+            default -> value.toString();
+        };
+    }
+
+    void write(final JSONWriter writer) throws IOException {
+        switch (kind) {
+            case LONG -> writer.value(bits);
+            case DOUBLE -> writer.value(Double.longBitsToDouble(bits));
+            default -> writer.value(value);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof JSONNumber other)) {
+            return false;
+        }
+        if (kind != BOXED && kind == other.kind) {
+            return bits == other.bits;
+        }
+        return Objects.equals(value(), other.value());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(value());
+    }
+
+    @Override
+    public String toString() {
+        return "JSONNumber[value=" + value() + "]";
     }
 }
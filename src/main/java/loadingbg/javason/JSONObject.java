@@ -1,7 +1,6 @@
 package loadingbg.javason;
 
 import java.util.*;
-import java.util.stream.*;
 
 public record JSONObject(Map<String, JSONElement> value) implements JSONElement {
     @Override
@@ -66,14 +65,11 @@ public record JSONObject(Map<String, JSONElement> value) implements JSONElement
 
     @Override
     public String toJSONString() {
-        return value.entrySet()
-            .stream()
-            .map(e -> "\"" + e.getKey() + "\":" + e.getValue().toJSONString())
-            .collect(Collectors.joining(",", "{", "}"));
+        return JSONWriter.toJSONString(this);
     }
 
     public Optional<JSONElement> get(final String key) {
-        return value.containsKey(key) ? Optional.of(value.get(key)) : Optional.empty();
+        return Optional.ofNullable(value.get(key));
     }
 
     public Optional<JSONElement> dig(final String key, final Object... subkeys) {
@@ -104,12 +100,50 @@ public record JSONObject(Map<String, JSONElement> value) implements JSONElement
         return dig(key, subkeys).flatMap(JSONElement::asObject);
     }
 
+    // The updates return new objects that share everything but the changed path with this one; the first update
+    // of an object copies its map once, into a persistent map.
+    public JSONObject with(final String key, final JSONElement element) {
+        return new JSONObject(PersistentMap.of(value).with(Objects.requireNonNull(key), Objects.requireNonNull(element)));
+    }
+
+    public JSONObject without(final String key) {
+        return value.containsKey(key) ? new JSONObject(PersistentMap.of(value).without(key)) : this;
+    }
+
+    // The path holds String keys and Integer indexes like the subkeys of dig(); missing objects and arrays along
+    // it are created, and an index one past the end of an array appends.
+    public JSONObject withIn(final List<?> path, final JSONElement element) {
+        if (path.isEmpty() || !(path.get(0) instanceof String)) {
+            throw new IllegalArgumentException("Path " + path + " doesn't start with a key");
+        }
+        return withInInternal(path, 0, element);
+    }
+
+    JSONObject withInInternal(final List<?> path, final int pathIndex, final JSONElement element) {
+        final var key = (String) path.get(pathIndex);
+        if (pathIndex == path.size() - 1) {
+            return with(key, element);
+        }
+
+        final var subvalue = value.get(key);
+        final var next = path.get(pathIndex + 1);
+        if (next instanceof Integer && (subvalue == null || subvalue instanceof JSONArray)) {
+            final var array = subvalue == null ? new JSONArray(PersistentVector.empty()) : (JSONArray) subvalue;
+            return with(key, array.withInInternal(path, pathIndex + 1, element));
+        }
+        if (next instanceof String && (subvalue == null || subvalue instanceof JSONObject)) {
+            final var object = subvalue == null ? new JSONObject(PersistentMap.of(Map.of())) : (JSONObject) subvalue;
+            return with(key, object.withInInternal(path, pathIndex + 1, element));
+        }
+        throw new IllegalArgumentException("Path " + path + " doesn't match the element at " + path.subList(0, pathIndex + 1));
+    }
+
     Optional<JSONElement> digInternal(final int subkeysIndex, final String key, final Object... subkeys) {
-        if (!value.containsKey(key)) {
+        final var subvalue = value.get(key);
+        if (subvalue == null) {
             return Optional.empty();
         }
 
-        final var subvalue = value.get(key);
         if (subkeysIndex >= subkeys.length) {
             return Optional.of(subvalue);
         }
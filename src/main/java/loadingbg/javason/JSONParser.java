@@ -0,0 +1,95 @@
+package loadingbg.javason;
+
+import java.nio.*;
+import java.text.*;
+import java.util.*;
+
+// Parses like JavaSON.parseJSON, but keeps its scratch space from one document to the next: the key cache (so
+// repeated keys and object shapes are shared across documents too), the builders for open containers and the
+// buffer for strings with escapes. An instance is for one thread at a time. Rather than keeping one per thread,
+// borrow one with pooled() and close it when done; the static parse methods of JavaSON take theirs from the
+// same pool.
+public final class JSONParser implements AutoCloseable {
+    private static final Pool<JSONParser> POOL = new Pool<>();
+
+    private final ParserBuffers buffers = new ParserBuffers(new KeyCache());
+    private JSONLimits limits;
+    private boolean isPooled;
+
+    public JSONParser() {
+        this(JSONLimits.DEFAULT);
+    }
+
+    public JSONParser(final JSONLimits limits) {
+        this.limits = Objects.requireNonNull(limits);
+    }
+
+    public static JSONParser pooled() {
+        return pooled(JSONLimits.DEFAULT);
+    }
+
+    // close() hands the parser back, after which it must not be used.
+    public static JSONParser pooled(final JSONLimits limits) {
+        var parser = POOL.take();
+        if (parser == null) {
+            parser = new JSONParser();
+        }
+        parser.limits = Objects.requireNonNull(limits);
+        parser.isPooled = true;
+        return parser;
+    }
+
+    public JSONLimits limits() {
+        return limits;
+    }
+
+    // Anything after the value is ignored.
+    public Optional<JSONElement> parse(final String json) {
+        return parse(json, new ParsePosition(0));
+    }
+
+    // Malformed input gives an empty Optional, input over the limits throws JSONException.
+    public Optional<JSONElement> parse(final String json, final ParsePosition position) {
+        final var parser = new StringParser(json, position.getIndex(), buffers, limits);
+        JSONElement element = null;
+        try {
+            element = parser.parseValue();
+        } finally {
+            buffers.recycle(element == null);
+        }
+        if (element == null) {
+            position.setErrorIndex(parser.errorIndex());
+            return Optional.empty();
+        }
+        position.setIndex(parser.index());
+        return Optional.of(element);
+    }
+
+    // The bytes are UTF-8. On success the buffer's position is moved past the value, on failure it is left as is.
+    public Optional<JSONElement> parse(final ByteBuffer json) {
+        final var parser = new ByteParser(json, json.position(), buffers, limits);
+        JSONElement element = null;
+        try {
+            element = parser.parseValue();
+        } finally {
+            buffers.recycle(element == null);
+        }
+        if (element == null) {
+            return Optional.empty();
+        }
+        json.position(parser.index());
+        return Optional.of(element);
+    }
+
+    public Optional<JSONElement> parse(final byte[] json) {
+        return parse(ByteBuffer.wrap(json));
+    }
+
+    @Override
+    public void close() {
+        if (isPooled) {
+            isPooled = false;
+            POOL.give(this);
+        }
+    }
+}
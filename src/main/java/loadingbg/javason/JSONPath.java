@@ -0,0 +1,608 @@
+package loadingbg.javason;
+
+import java.io.*;
+import java.math.*;
+import java.util.*;
+import java.util.function.*;
+
+// A JSONPath ("$.store.book[?(@.price < 10)].title") or JSON Pointer ("/store/book/0/title") compiled once into
+// steps that can be run any number of times, from any number of threads.
+// JSONPath supports .name, ['name'], [index] (negative from the end), .* and [*], [start:end:step] slices and
+// [?filter] / [?(filter)] filters over @-relative paths with == != < <= > >=, &&, || and !.
+public final class JSONPath {
+    private final String expression;
+    private final Step[] steps;
+    // only names and indices, so there is at most one match
+    private final boolean isDefinite;
+
+    private JSONPath(final String expression, final Step[] steps) {
+        this.expression = expression;
+        this.steps = steps;
+        this.isDefinite = Arrays.stream(steps).allMatch(step -> step instanceof Key || step instanceof Index || step instanceof Token);
+    }
+
+    public static JSONPath compile(final String expression) {
+        if (expression.isEmpty() || expression.charAt(0) == '/') {
+            return new JSONPath(expression, pointer(expression));
+        }
+        final var compiler = new Compiler(expression);
+        final var path = compiler.path('$');
+        if (compiler.index < expression.length()) {
+            throw compiler.error("Unexpected character");
+        }
+        return path;
+    }
+
+    public boolean isDefinite() {
+        return isDefinite;
+    }
+
+    // The first match, in document order.
+    public Optional<JSONElement> find(final JSONElement root) {
+        if (isDefinite) {
+            var current = root;
+            for (var idx = 0; idx < steps.length && current != null; idx++) {
+                current = child(current, steps[idx]);
+            }
+            return Optional.ofNullable(current);
+        }
+        final var found = new JSONElement[1];
+        walk(root, 0, element -> {
+            found[0] = element;
+            return false;
+        });
+        return Optional.ofNullable(found[0]);
+    }
+
+    public List<JSONElement> findAll(final JSONElement root) {
+        final var found = new ArrayList<JSONElement>();
+        forEach(root, found::add);
+        return found;
+    }
+
+    public void forEach(final JSONElement root, final Consumer<? super JSONElement> action) {
+        walk(root, 0, element -> {
+            action.accept(element);
+            return true;
+        });
+    }
+
+    // Reads one value from the reader and passes the matches to action as they are read. Only the matches, and
+    // the members a filter or a negative index has to look at, are built into trees; the rest is skipped.
+    public void read(final JSONReader reader, final Consumer<? super JSONElement> action) throws IOException {
+        read(reader, 0, action);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    // Returns false once sink has asked to stop.
+    private boolean walk(final JSONElement node, final int stepIdx, final Predicate<? super JSONElement> sink) {
+        if (stepIdx == steps.length) {
+            return sink.test(node);
+        }
+        return switch (steps[stepIdx]) {
+            case Wildcard wildcard -> walkChildren(node, null, stepIdx, sink);
+            case Filter filter -> walkChildren(node, filter.condition(), stepIdx, sink);
+            case Slice slice -> !(node instanceof JSONArray array) || walkSlice(array.value(), slice, stepIdx, sink);
+            case Step step -> {
+                final var child = child(node, step);
+                yield child == null || walk(child, stepIdx + 1, sink);
+            }
+        };
+    }
+
+    private boolean walkChildren(final JSONElement node, final Condition condition, final int stepIdx,
+                                 final Predicate<? super JSONElement> sink) {
+        final Collection<JSONElement> children = switch (node) {
+            case JSONArray array -> array.value();
+            case JSONObject object -> object.value().values();
+            default -> List.of();
+        };
+        for (final var child : children) {
+            if ((condition == null || condition.test(child)) && !walk(child, stepIdx + 1, sink)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Python's slice semantics, which RFC 9535 follows
+    private boolean walkSlice(final List<JSONElement> elements, final Slice slice, final int stepIdx,
+                              final Predicate<? super JSONElement> sink) {
+        final var size = elements.size();
+        if (slice.step() > 0) {
+            final var upper = slice.bound(slice.end(), size, size, 0, size);
+            for (var idx = slice.bound(slice.start(), 0, size, 0, size); idx < upper; idx += slice.step()) {
+                if (!walk(elements.get(idx), stepIdx + 1, sink)) {
+                    return false;
+                }
+            }
+        } else {
+            final var lower = slice.bound(slice.end(), -1, size, -1, size - 1);
+            for (var idx = slice.bound(slice.start(), size - 1, size, -1, size - 1); idx > lower; idx += slice.step()) {
+                if (!walk(elements.get(idx), stepIdx + 1, sink)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void read(final JSONReader reader, final int stepIdx, final Consumer<? super JSONElement> action) throws IOException {
+        if (stepIdx == steps.length) {
+            action.accept(reader.nextElement());
+            return;
+        }
+        final var step = steps[stepIdx];
+        switch (reader.peek()) {
+            case BEGIN_OBJECT -> {
+                if (step instanceof Index || step instanceof Slice) {
+                    reader.skipValue();
+                    return;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    final var name = reader.nextName();
+                    switch (step) {
+                        case Key key when key.name().equals(name) -> read(reader, stepIdx + 1, action);
+                        case Token token when token.name().equals(name) -> read(reader, stepIdx + 1, action);
+                        case Wildcard wildcard -> read(reader, stepIdx + 1, action);
+                        case Filter filter -> readFiltered(reader, filter, stepIdx, action);
+                        default -> reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            case BEGIN_ARRAY -> {
+                if (step instanceof Key) {
+                    reader.skipValue();
+                    return;
+                }
+                if (step instanceof Index index && index.index() < 0 || step instanceof Slice slice && !slice.isForward()) {
+                    // counts from the end, so the length has to be known
+                    forEach(reader.nextElement(), stepIdx, action);
+                    return;
+                }
+                reader.beginArray();
+                for (var idx = 0; reader.hasNext(); idx++) {
+                    final var position = idx;
+                    switch (step) {
+                        case Index index when index.index() == position -> read(reader, stepIdx + 1, action);
+                        case Token token when token.index() == position -> read(reader, stepIdx + 1, action);
+                        case Slice slice when slice.contains(position) -> read(reader, stepIdx + 1, action);
+                        case Wildcard wildcard -> read(reader, stepIdx + 1, action);
+                        case Filter filter -> readFiltered(reader, filter, stepIdx, action);
+                        default -> reader.skipValue();
+                    }
+                }
+                reader.endArray();
+            }
+            default -> reader.skipValue();
+        }
+    }
+
+    private void readFiltered(final JSONReader reader, final Filter filter, final int stepIdx,
+                              final Consumer<? super JSONElement> action) throws IOException {
+        final var child = reader.nextElement();
+        if (filter.condition().test(child)) {
+            forEach(child, stepIdx + 1, action);
+        }
+    }
+
+    private void forEach(final JSONElement node, final int stepIdx, final Consumer<? super JSONElement> action) {
+        walk(node, stepIdx, element -> {
+            action.accept(element);
+            return true;
+        });
+    }
+
+    // Only called for Key, Index and Token; null when there is no such member.
+    private static JSONElement child(final JSONElement node, final Step step) {
+        return switch (step) {
+            case Key key when node instanceof JSONObject object -> object.value().get(key.name());
+            case Token token when node instanceof JSONObject object -> object.value().get(token.name());
+            case Index index when node instanceof JSONArray array -> element(array.value(), index.index());
+            case Token token when node instanceof JSONArray array && token.index() >= 0 -> element(array.value(), token.index());
+            default -> null;
+        };
+    }
+
+    private static JSONElement element(final List<JSONElement> elements, final int index) {
+        final var normalized = index < 0 ? elements.size() + index : index;
+        return normalized >= 0 && normalized < elements.size() ? elements.get(normalized) : null;
+    }
+
+    // RFC 6901: "/"-separated tokens where "~1" stands for "/" and "~0" for "~".
+    private static Step[] pointer(final String pointer) {
+        if (pointer.isEmpty()) {
+            return new Step[0];
+        }
+        final var tokens = pointer.substring(1).split("/", -1);
+        final var steps = new Step[tokens.length];
+        for (var idx = 0; idx < tokens.length; idx++) {
+            final var token = tokens[idx];
+            final var builder = new StringBuilder(token.length());
+            for (var charIdx = 0; charIdx < token.length(); charIdx++) {
+                final var currChar = token.charAt(charIdx);
+                if (currChar != '~') {
+                    builder.append(currChar);
+                } else if (charIdx + 1 < token.length() && (token.charAt(charIdx + 1) == '0' || token.charAt(charIdx + 1) == '1')) {
+                    builder.append(token.charAt(++charIdx) == '0' ? '~' : '/');
+                } else {
+                    throw new IllegalArgumentException("Invalid escape in JSON pointer " + pointer);
+                }
+            }
+            final var name = builder.toString();
+            steps[idx] = new Token(name, arrayIndex(name));
+        }
+        return steps;
+    }
+
+    // -1 unless the token is a valid array index: digits without leading zeros
+    private static int arrayIndex(final String token) {
+        if (token.isEmpty() || token.length() > 9 || token.length() > 1 && token.charAt(0) == '0') {
+            return -1;
+        }
+        for (var idx = 0; idx < token.length(); idx++) {
+            if (!StringParser.isDigit(token.charAt(idx))) {
+                return -1;
+            }
+        }
+        return Integer.parseInt(token);
+    }
+
+    private sealed interface Step permits Key, Index, Token, Wildcard, Slice, Filter {}
+
+    private record Key(String name) implements Step {}
+
+    private record Index(int index) implements Step {}
+
+    // A JSON Pointer token, which is an object key or, when it looks like one, an array index.
+    private record Token(String name, int index) implements Step {}
+
+    private record Wildcard() implements Step {}
+
+    // start and end are null when left out
+    private record Slice(Integer start, Integer end, int step) implements Step {
+        boolean isForward() {
+            return step > 0 && (start == null || start >= 0) && (end == null || end >= 0);
+        }
+
+        boolean contains(final int index) {
+            final var from = start == null ? 0 : start;
+            return index >= from && (end == null || index < end) && (index - from) % step == 0;
+        }
+
+        int bound(final Integer value, final int absent, final int size, final int min, final int max) {
+            if (value == null) {
+                return absent;
+            }
+            final var normalized = value < 0 ? size + value : value;
+            return Math.max(min, Math.min(max, normalized));
+        }
+    }
+
+    private record Filter(Condition condition) implements Step {}
+
+    private sealed interface Condition permits Exists, Comparison, And, Or, Not {
+        boolean test(JSONElement node);
+    }
+
+    private record Exists(JSONPath path) implements Condition {
+        @Override
+        public boolean test(final JSONElement node) {
+            return path.find(node).isPresent();
+        }
+    }
+
+    private record Comparison(JSONPath path, String operator, JSONElement literal) implements Condition {
+        @Override
+        public boolean test(final JSONElement node) {
+            final var value = path.find(node);
+            if (value.isEmpty()) {
+                return operator.equals("!=");
+            }
+            final var order = compare(value.get(), literal);
+            return switch (operator) {
+                case "==" -> order == 0;
+                case "!=" -> order != 0;
+                case "<" -> order == -1;
+                case "<=" -> order == -1 || order == 0;
+                case ">" -> order == 1;
+                default -> order == 1 || order == 0;
+            };
+        }
+
+        // -1, 0 or 1, or 2 when the values differ but have no order
+        private static int compare(final JSONElement left, final JSONElement right) {
+            if (left instanceof JSONNumber leftNum && right instanceof JSONNumber rightNum) {
+                if (isBig(leftNum.value()) || isBig(rightNum.value())) {
+                    return Integer.signum(decimal(leftNum.value()).compareTo(decimal(rightNum.value())));
+                }
+                final var leftValue = leftNum.doubleValue();
+                final var rightValue = rightNum.doubleValue();
+                return leftValue < rightValue ? -1 : leftValue > rightValue ? 1 : leftValue == rightValue ? 0 : 2;
+            }
+            if (left instanceof JSONString leftStr && right instanceof JSONString rightStr) {
+                return Integer.signum(leftStr.value().compareTo(rightStr.value()));
+            }
+            return left.equals(right) ? 0 : 2;
+        }
+
+        private static boolean isBig(final Number num) {
+            return num instanceof BigInteger || num instanceof BigDecimal;
+        }
+
+        private static BigDecimal decimal(final Number num) {
+            return switch (num) {
+                case BigDecimal bigDecimal -> bigDecimal;
+                case BigInteger bigInt -> new BigDecimal(bigInt);
+                case Float floatNum -> new BigDecimal(floatNum.toString());
+                case Double doubleNum -> BigDecimal.valueOf(doubleNum);
+                default -> BigDecimal.valueOf(num.longValue());
+            };
+        }
+    }
+
+    private record And(Condition left, Condition right) implements Condition {
+        @Override
+        public boolean test(final JSONElement node) {
+            return left.test(node) && right.test(node);
+        }
+    }
+
+    private record Or(Condition left, Condition right) implements Condition {
+        @Override
+        public boolean test(final JSONElement node) {
+            return left.test(node) || right.test(node);
+        }
+    }
+
+    private record Not(Condition condition) implements Condition {
+        @Override
+        public boolean test(final JSONElement node) {
+            return !condition.test(node);
+        }
+    }
+
+    private static final class Compiler {
+        private final String expression;
+        private int index;
+
+        Compiler(final String expression) {
+            this.expression = expression;
+        }
+
+        // root is '$' for a whole path and '@' for one inside a filter
+        JSONPath path(final char root) {
+            final var start = index;
+            if (!consume(root)) {
+                throw error("Expected '" + root + "'");
+            }
+            final var steps = new ArrayList<Step>();
+            while (index < expression.length()) {
+                final var currChar = expression.charAt(index);
+                if (currChar == '.') {
+                    index++;
+                    if (consume('*')) {
+                        steps.add(new Wildcard());
+                    } else {
+                        steps.add(new Key(name()));
+                    }
+                } else if (currChar == '[') {
+                    index++;
+                    steps.add(bracket());
+                } else {
+                    break;
+                }
+            }
+            return new JSONPath(expression.substring(start, index), steps.toArray(new Step[0]));
+        }
+
+        private String name() {
+            final var start = index;
+            while (index < expression.length()) {
+                final var currChar = expression.charAt(index);
+                if (!Character.isLetterOrDigit(currChar) && currChar != '_' && currChar != '$') {
+                    break;
+                }
+                index++;
+            }
+            if (index == start) {
+                throw error("Expected a name");
+            }
+            return expression.substring(start, index);
+        }
+
+        // after the '['
+        private Step bracket() {
+            skipWhitespace();
+            final Step step;
+            if (consume('*')) {
+                step = new Wildcard();
+            } else if (consume('?')) {
+                step = new Filter(or());
+            } else if (peek() == '\'' || peek() == '"') {
+                step = new Key(quoted());
+            } else {
+                final var start = optionalInteger();
+                skipWhitespace();
+                if (peek() == ':') {
+                    index++;
+                    final var end = optionalInteger();
+                    skipWhitespace();
+                    var stride = 1;
+                    if (consume(':')) {
+                        final var explicit = optionalInteger();
+                        stride = explicit == null ? 1 : explicit;
+                        if (stride == 0) {
+                            throw error("A slice step can't be 0");
+                        }
+                    }
+                    step = new Slice(start, end, stride);
+                } else if (start == null) {
+                    throw error("Expected a name, an index, a slice, '*' or a filter");
+                } else {
+                    step = new Index(start);
+                }
+            }
+            skipWhitespace();
+            if (!consume(']')) {
+                throw error("Expected ']'");
+            }
+            return step;
+        }
+
+        private Condition or() {
+            var condition = and();
+            while (consume("||")) {
+                condition = new Or(condition, and());
+            }
+            return condition;
+        }
+
+        private Condition and() {
+            var condition = unary();
+            while (consume("&&")) {
+                condition = new And(condition, unary());
+            }
+            return condition;
+        }
+
+        private Condition unary() {
+            skipWhitespace();
+            if (consume('!')) {
+                return new Not(unary());
+            }
+            if (consume('(')) {
+                final var condition = or();
+                skipWhitespace();
+                if (!consume(')')) {
+                    throw error("Expected ')'");
+                }
+                return condition;
+            }
+            if (peek() != '@') {
+                // a literal on the left: flip the comparison around
+                final var literal = literal();
+                final var operator = operator();
+                if (operator == null) {
+                    throw error("Expected a comparison");
+                }
+                skipWhitespace();
+                return new Comparison(path('@'), flip(operator), literal);
+            }
+            final var path = path('@');
+            final var operator = operator();
+            if (operator == null) {
+                return new Exists(path);
+            }
+            skipWhitespace();
+            return new Comparison(path, operator, literal());
+        }
+
+        private String operator() {
+            skipWhitespace();
+            for (final var operator : new String[] {"==", "!=", "<=", ">=", "<", ">"}) {
+                if (consume(operator)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+
+        private static String flip(final String operator) {
+            return switch (operator) {
+                case "<" -> ">";
+                case "<=" -> ">=";
+                case ">" -> "<";
+                case ">=" -> "<=";
+                default -> operator;
+            };
+        }
+
+        private JSONElement literal() {
+            if (peek() == '\'') {
+                return new JSONString(quoted());
+            }
+            final var parser = new StringParser(expression, index);
+            final var literal = parser.parseValue();
+            if (literal == null || literal instanceof JSONArray || literal instanceof JSONObject) {
+                throw error("Expected a literal");
+            }
+            index = parser.index();
+            return literal;
+        }
+
+        private String quoted() {
+            final var quote = expression.charAt(index++);
+            final var builder = new StringBuilder();
+            while (index < expression.length()) {
+                final var currChar = expression.charAt(index++);
+                if (currChar == quote) {
+                    return builder.toString();
+                }
+                if (currChar == '\\' && index < expression.length()) {
+                    builder.append(expression.charAt(index++));
+                } else {
+                    builder.append(currChar);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private Integer optionalInteger() {
+            skipWhitespace();
+            final var start = index;
+            if (peek() == '-') {
+                index++;
+            }
+            while (index < expression.length() && StringParser.isDigit(expression.charAt(index))) {
+                index++;
+            }
+            if (index == start || index == start + 1 && expression.charAt(start) == '-') {
+                index = start;
+                return null;
+            }
+            try {
+                return Integer.parseInt(expression, start, index, 10);
+            } catch (final NumberFormatException e) {
+                throw error("Index out of range");
+            }
+        }
+
+        private char peek() {
+            return index < expression.length() ? expression.charAt(index) : '\0';
+        }
+
+        private boolean consume(final char expected) {
+            if (peek() == expected) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean consume(final String expected) {
+            skipWhitespace();
+            if (expression.startsWith(expected, index)) {
+                index += expected.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (index < expression.length() && Character.isWhitespace(expression.charAt(index))) {
+                index++;
+            }
+        }
+
+        IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException(message + " at index " + index + " of JSONPath " + expression);
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package loadingbg.javason;
+
+import java.nio.*;
+import java.util.*;
+import java.util.function.*;
+
+// Parses UTF-8 JSON that arrives in pieces: every chunk passed to feed is consumed in full, and whatever token it
+// ends in the middle of (a string, an escape, a UTF-8 sequence, a number or a literal) is picked up by the next one.
+// Events reach the listener as soon as their token is complete; a number is only complete once the byte after it
+// (or end) is seen. Any number of top-level values may follow one another, as in JSONReader.
+// Not thread-safe, and after a JSONException the parser can't be fed any more.
+public final class JSONPushParser {
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    // after a ',' in an array
+    private static final int NEXT_ELEMENT = 4;
+    private static final int EMPTY_OBJECT = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+    // after a ',' in an object
+    private static final int NEXT_NAME = 7;
+    private static final int DANGLING_NAME = 8;
+    // after a ':'
+    private static final int MEMBER_VALUE = 9;
+    private static final int CLOSED = 10;
+
+    private static final int NO_TOKEN = 0;
+    private static final int STRING = 1;
+    private static final int NAME = 2;
+    private static final int NUMBER = 3;
+    private static final int LITERAL = 4;
+
+    // how far into an escape sequence a string is
+    private static final int NO_ESCAPE = 0;
+    private static final int BACKSLASH = 1;
+    // inside a unicode escape, with escape - UNICODE hex digits still to come
+    private static final int UNICODE = 2;
+
+    private final Listener listener;
+    private final JSONLimits limits;
+    private final KeyCache keys;
+
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+    // bytes fed before the current chunk
+    private long offset;
+
+    private int token = NO_TOKEN;
+    private long tokenStart;
+    // the decoded chars of the current string, or the chars of the current number
+    private char[] text = new char[64];
+    private int textLength;
+    private int escape = NO_ESCAPE;
+    private int unicodeValue;
+    // a UTF-8 sequence cut short by the end of a chunk
+    private int continuations;
+    private int codePoint;
+    private int minCodePoint;
+    private String literal;
+    private int literalIndex;
+
+    public JSONPushParser(final Listener listener) {
+        this(listener, JSONLimits.DEFAULT);
+    }
+
+    public JSONPushParser(final Listener listener, final JSONLimits limits) {
+        this(listener, limits, new KeyCache());
+    }
+
+    private JSONPushParser(final Listener listener, final JSONLimits limits, final KeyCache keys) {
+        this.listener = Objects.requireNonNull(listener);
+        this.limits = Objects.requireNonNull(limits);
+        this.keys = keys;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    // Hands every complete top-level value to values, built the way JavaSON.parseJSON builds them.
+    public static JSONPushParser forValues(final Consumer<? super JSONElement> values) {
+        return forValues(values, JSONLimits.DEFAULT);
+    }
+
+    public static JSONPushParser forValues(final Consumer<? super JSONElement> values, final JSONLimits limits) {
+        final var keys = new KeyCache();
+        return new JSONPushParser(new TreeBuilder(Objects.requireNonNull(values), keys), limits, keys);
+    }
+
+    // Receives the document as it is parsed; strings, numbers, booleans and nulls all arrive through value.
+    public interface Listener {
+        default void beginArray() {}
+
+        default void endArray() {}
+
+        default void beginObject() {}
+
+        default void endObject() {}
+
+        default void name(final String name) {}
+
+        default void value(final JSONElement value) {}
+    }
+
+    // Consumes the chunk's remaining bytes, leaving its position at its limit.
+    public void feed(final ByteBuffer chunk) {
+        if (stack[0] == CLOSED) {
+            throw new IllegalStateException("JSONPushParser is closed");
+        }
+        final var start = chunk.position();
+        final var limit = chunk.limit();
+        if (offset + (limit - start) > limits.maxDocumentSize()) {
+            stack[0] = CLOSED;
+            throw limits.documentSizeExceeded(limits.maxDocumentSize());
+        }
+        try {
+            var idx = start;
+            while (idx < limit) {
+                idx = switch (token) {
+                    case STRING, NAME -> string(chunk, idx, limit, offset - start);
+                    case NUMBER -> number(chunk, idx, limit, offset - start);
+                    case LITERAL -> literal(chunk, idx, limit, offset - start);
+                    default -> {
+                        structural(chunk.get(idx), offset - start + idx);
+                        yield idx + 1;
+                    }
+                };
+            }
+        } catch (final JSONException e) {
+            stack[0] = CLOSED;
+            throw e;
+        }
+        offset += limit - start;
+        chunk.position(limit);
+    }
+
+    // Marks the end of the input, completing a trailing top-level number; throws if a value is left unfinished.
+    // An input that held no value at all isn't an error, the listener just didn't get anything.
+    public void end() {
+        if (stack[0] == CLOSED) {
+            throw new IllegalStateException("JSONPushParser is closed");
+        }
+        final var isComplete = switch (token) {
+            case NUMBER -> {
+                completeNumber();
+                yield true;
+            }
+            case NO_TOKEN -> true;
+            default -> false;
+        };
+        stack[0] = CLOSED;
+        if (!isComplete || stackSize > 1) {
+            throw new JSONException("Unexpected end of input", offset);
+        }
+    }
+
+    // Handles one byte between tokens, which includes the byte that ended a number.
+    private void structural(final byte currByte, final long position) {
+        if (ByteParser.isWhitespace(currByte)) {
+            return;
+        }
+        switch (stack[stackSize - 1]) {
+            case EMPTY_DOCUMENT, NONEMPTY_DOCUMENT -> {
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                beginValue(currByte, position);
+            }
+            case EMPTY_ARRAY, NEXT_ELEMENT -> {
+                if (currByte == ']' && stack[stackSize - 1] == EMPTY_ARRAY) {
+                    stackSize--;
+                    listener.endArray();
+                } else {
+                    stack[stackSize - 1] = NONEMPTY_ARRAY;
+                    beginValue(currByte, position);
+                }
+            }
+            case NONEMPTY_ARRAY -> {
+                if (currByte == ']') {
+                    stackSize--;
+                    listener.endArray();
+                } else if (currByte == ',') {
+                    stack[stackSize - 1] = NEXT_ELEMENT;
+                } else {
+                    throw new JSONException("Expected ',' or ']'", position);
+                }
+            }
+            case EMPTY_OBJECT, NEXT_NAME -> {
+                if (currByte == '}' && stack[stackSize - 1] == EMPTY_OBJECT) {
+                    stackSize--;
+                    listener.endObject();
+                } else if (currByte == '"') {
+                    stack[stackSize - 1] = DANGLING_NAME;
+                    beginText(NAME, position);
+                } else {
+                    throw new JSONException("Expected a name", position);
+                }
+            }
+            case NONEMPTY_OBJECT -> {
+                if (currByte == '}') {
+                    stackSize--;
+                    listener.endObject();
+                } else if (currByte == ',') {
+                    stack[stackSize - 1] = NEXT_NAME;
+                } else {
+                    throw new JSONException("Expected ',' or '}'", position);
+                }
+            }
+            case DANGLING_NAME -> {
+                if (currByte != ':') {
+                    throw new JSONException("Expected ':'", position);
+                }
+                stack[stackSize - 1] = MEMBER_VALUE;
+            }
+            case MEMBER_VALUE -> {
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                beginValue(currByte, position);
+            }
+        }
+    }
+
+    private void beginValue(final byte currByte, final long position) {
+        switch (currByte) {
+            case '[' -> {
+                push(EMPTY_ARRAY, position);
+                listener.beginArray();
+            }
+            case '{' -> {
+                push(EMPTY_OBJECT, position);
+                listener.beginObject();
+            }
+            case '"' -> beginText(STRING, position);
+            case 't' -> beginLiteral("true", position);
+            case 'f' -> beginLiteral("false", position);
+            case 'n' -> beginLiteral("null", position);
+            case '-', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> {
+                token = NUMBER;
+                tokenStart = position;
+                textLength = 0;
+                append((char) currByte);
+            }
+            default -> throw new JSONException("Unexpected character '" + (char) (currByte & 0xFF) + "'", position);
+        }
+    }
+
+    private void push(final int scope, final long position) {
+        // the bottom of the stack is the document
+        if (stackSize > limits.maxDepth()) {
+            throw limits.depthExceeded(position);
+        }
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private void beginText(final int kind, final long position) {
+        token = kind;
+        tokenStart = position;
+        textLength = 0;
+    }
+
+    private void beginLiteral(final String value, final long position) {
+        token = LITERAL;
+        tokenStart = position;
+        literal = value;
+        literalIndex = 1;
+    }
+
+    // base turns an index in the chunk into a position in the input
+    private int string(final ByteBuffer chunk, int idx, final int limit, final long base) {
+        while (idx < limit) {
+            // the closing quote of a string within the limit comes before this
+            final var end = (int) Math.min(limit, tokenStart + 2 + (long) limits.maxStringLength() - base);
+            if (idx >= end) {
+                throw limits.stringLengthExceeded(tokenStart);
+            }
+            if (escape != NO_ESCAPE) {
+                escape(chunk.get(idx), base + idx);
+                idx++;
+            } else if (continuations > 0) {
+                continuation(chunk.get(idx), base + idx);
+                idx++;
+            } else {
+                final var next = StructuralScanner.INSTANCE.scanString(chunk, idx, end);
+                ensureText(next - idx);
+                for (; idx < next; idx++) {
+                    text[textLength++] = (char) chunk.get(idx);
+                }
+                if (idx == end) {
+                    continue;
+                }
+                final var currByte = chunk.get(idx++);
+                if (currByte == '"') {
+                    completeString();
+                    return idx;
+                }
+                if (currByte == '\\') {
+                    escape = BACKSLASH;
+                } else {
+                    leadByte(currByte, base + idx - 1);
+                }
+            }
+        }
+        return idx;
+    }
+
+    private void escape(final byte currByte, final long position) {
+        if (escape == BACKSLASH) {
+            escape = NO_ESCAPE;
+            switch (currByte) {
+                case '"', '\'', '/', '\\' -> append((char) currByte);
+                case 'b' -> append('\b');
+                case 'f' -> append('\f');
+                case 'n' -> append('\n');
+                case 'r' -> append('\r');
+                case 't' -> append('\t');
+                case 'u' -> {
+                    escape = UNICODE + 4;
+                    unicodeValue = 0;
+                }
+                default -> throw new JSONException("Invalid escape sequence", position);
+            }
+            return;
+        }
+        final var hexValue = StringParser.hexValue((char) (currByte & 0xFF));
+        if (hexValue < 0) {
+            throw new JSONException("Invalid escape sequence", position);
+        }
+        unicodeValue = (unicodeValue << 4) | hexValue;
+        if (--escape == UNICODE) {
+            escape = NO_ESCAPE;
+            append((char) unicodeValue);
+        }
+    }
+
+    // Same checks as ByteParser: no overlong sequences, surrogates or code points past U+10FFFF.
+    private void leadByte(final byte currByte, final long position) {
+        final var lead = currByte & 0xFF;
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            continuations = 1;
+            minCodePoint = 0x80;
+            codePoint = lead & 0x1F;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            continuations = 2;
+            minCodePoint = 0x800;
+            codePoint = lead & 0x0F;
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            continuations = 3;
+            minCodePoint = 0x10000;
+            codePoint = lead & 0x07;
+        } else {
+            throw new JSONException("Malformed UTF-8", position);
+        }
+    }
+
+    private void continuation(final byte currByte, final long position) {
+        if ((currByte & 0xC0) != 0x80) {
+            throw new JSONException("Malformed UTF-8", position);
+        }
+        codePoint = (codePoint << 6) | (currByte & 0x3F);
+        if (--continuations > 0) {
+            return;
+        }
+        if (codePoint < minCodePoint || codePoint > Character.MAX_CODE_POINT
+            || codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            throw new JSONException("Malformed UTF-8", position);
+        }
+        if (Character.isBmpCodePoint(codePoint)) {
+            append((char) codePoint);
+        } else {
+            append(Character.highSurrogate(codePoint));
+            append(Character.lowSurrogate(codePoint));
+        }
+    }
+
+    private void completeString() {
+        final var kind = token;
+        token = NO_TOKEN;
+        if (kind == NAME) {
+            listener.name(keys.intern(text, 0, textLength));
+        } else {
+            listener.value(new JSONString(new String(text, 0, textLength)));
+        }
+    }
+
+    // Collects the chars a number can be made of; StringParser checks the grammar once the number ends.
+    private int number(final ByteBuffer chunk, int idx, final int limit, final long base) {
+        while (idx < limit) {
+            final var currByte = chunk.get(idx);
+            if (!StringParser.isDigit((char) currByte) && currByte != '.' && currByte != 'e' && currByte != 'E'
+                && currByte != '-' && currByte != '+') {
+                completeNumber();
+                return idx;
+            }
+            if (textLength == limits.maxNumberLength()) {
+                throw limits.numberLengthExceeded(tokenStart);
+            }
+            append((char) currByte);
+            idx++;
+        }
+        return idx;
+    }
+
+    private void completeNumber() {
+        token = NO_TOKEN;
+        final var number = new String(text, 0, textLength);
+        final var parser = new StringParser(number, 0, JSONLimits.NONE);
+        final var element = parser.parseValue();
+        if (element == null || parser.index() < number.length()) {
+            throw new JSONException("Malformed number", tokenStart + (element == null ? parser.errorIndex() : parser.index()));
+        }
+        listener.value(element);
+    }
+
+    private int literal(final ByteBuffer chunk, int idx, final int limit, final long base) {
+        while (idx < limit) {
+            if (chunk.get(idx) != literal.charAt(literalIndex)) {
+                throw new JSONException("Invalid literal", base + idx);
+            }
+            idx++;
+            if (++literalIndex == literal.length()) {
+                token = NO_TOKEN;
+                listener.value(switch (literal) {
+                    case "true" -> new JSONBoolean(true);
+                    case "false" -> new JSONBoolean(false);
+                    default -> JSONNull.INSTANCE;
+                });
+                break;
+            }
+        }
+        return idx;
+    }
+
+    private void append(final char c) {
+        ensureText(1);
+        text[textLength++] = c;
+    }
+
+    private void ensureText(final int count) {
+        if (textLength + count > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + count));
+        }
+    }
+
+    // Builds the listened-to events back into values, the way JSONReader.nextElement does.
+    private static final class TreeBuilder implements Listener {
+        private final Consumer<? super JSONElement> values;
+        private final KeyCache keys;
+        // the open containers, innermost last, and the name each open object is waiting on a value for
+        private Object[] builders = new Object[8];
+        private String[] pendingNames = new String[8];
+        private int depth;
+
+        TreeBuilder(final Consumer<? super JSONElement> values, final KeyCache keys) {
+            this.values = values;
+            this.keys = keys;
+        }
+
+        @Override
+        public void beginArray() {
+            open(new ArrayBuilder());
+        }
+
+        @Override
+        public void endArray() {
+            final var array = (ArrayBuilder) builders[--depth];
+            builders[depth] = null;
+            value(array.build());
+        }
+
+        @Override
+        public void beginObject() {
+            open(new ObjectBuilder(keys));
+        }
+
+        @Override
+        public void endObject() {
+            final var object = (ObjectBuilder) builders[--depth];
+            builders[depth] = null;
+            value(object.build());
+        }
+
+        @Override
+        public void name(final String name) {
+            pendingNames[depth - 1] = name;
+        }
+
+        @Override
+        public void value(final JSONElement value) {
+            if (depth == 0) {
+                values.accept(value);
+            } else if (builders[depth - 1] instanceof ArrayBuilder array) {
+                array.add(value);
+            } else {
+                ((ObjectBuilder) builders[depth - 1]).put(pendingNames[depth - 1], value);
+            }
+        }
+
+        private void open(final Object builder) {
+            if (depth == builders.length) {
+                builders = Arrays.copyOf(builders, depth * 2);
+                pendingNames = Arrays.copyOf(pendingNames, depth * 2);
+            }
+            builders[depth++] = builder;
+        }
+    }
+}
@@ -0,0 +1,640 @@
+package loadingbg.javason;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+public final class JSONReader implements Closeable {
+    static final int BUFFER_SIZE = 8192;
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private static final Pool<JSONReader> POOL = new Pool<>();
+
+    private Reader in;
+    private JSONLimits limits;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    // number of chars that were discarded from the front of the buffer
+    private long bufferOffset;
+
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+
+    private JSONToken peeked;
+    private boolean peekedBoolean;
+    private boolean peekedNegative;
+    private long peekedSignificand;
+    private int peekedDigits;
+    private int peekedExponent;
+    private boolean peekedFraction;
+    // whether the peeked number is an integer literal that fits a long
+    private boolean peekedLongValid;
+    private final StringBuilder scratch = new StringBuilder();
+    private final KeyCache names = new KeyCache();
+    private boolean isPooled;
+
+    public JSONReader(final Reader in) {
+        this(in, JSONLimits.DEFAULT);
+    }
+
+    public JSONReader(final Reader in, final JSONLimits limits) {
+        this.in = Objects.requireNonNull(in);
+        this.limits = Objects.requireNonNull(limits);
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    public JSONReader(final InputStream in) {
+        this(in, JSONLimits.DEFAULT);
+    }
+
+    public JSONReader(final InputStream in, final JSONLimits limits) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8), limits);
+    }
+
+    public static JSONReader pooled(final Reader in) {
+        return pooled(in, JSONLimits.DEFAULT);
+    }
+
+    // A reader from a pool shared by all threads. close() hands it back after closing in as usual, and it must
+    // not be used after that.
+    public static JSONReader pooled(final Reader in, final JSONLimits limits) {
+        final var pooled = POOL.take();
+        final var reader = pooled != null ? pooled.reset(in) : new JSONReader(in);
+        reader.limits = Objects.requireNonNull(limits);
+        reader.isPooled = true;
+        return reader;
+    }
+
+    // Starts reading a new document from in, keeping the buffers and the cache of names.
+    public JSONReader reset(final Reader in) {
+        this.in = Objects.requireNonNull(in);
+        pos = 0;
+        limit = 0;
+        bufferOffset = 0;
+        if (stack.length > 1024) {
+            stack = new int[32];
+        }
+        stackSize = 1;
+        stack[0] = EMPTY_DOCUMENT;
+        peeked = null;
+        scratch.setLength(0);
+        if (scratch.capacity() > ParserBuffers.MAX_RETAINED) {
+            scratch.trimToSize();
+        }
+        return this;
+    }
+
+    public JSONToken peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+
+        switch (stack[stackSize - 1]) {
+            case EMPTY_DOCUMENT, NONEMPTY_DOCUMENT -> {
+                if (nextNonWhitespace() < 0) {
+                    return peeked = JSONToken.END_DOCUMENT;
+                }
+                pos--;
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+            }
+            case EMPTY_ARRAY -> {
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                if (nextNonWhitespace() == ']') {
+                    return peeked = JSONToken.END_ARRAY;
+                }
+                pos--;
+            }
+            case NONEMPTY_ARRAY -> {
+                final var c = nextNonWhitespace();
+                if (c == ']') {
+                    return peeked = JSONToken.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+            }
+            case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+                var c = nextNonWhitespace();
+                if (c == '}') {
+                    return peeked = JSONToken.END_OBJECT;
+                }
+                if (stack[stackSize - 1] == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected a name");
+                }
+                stack[stackSize - 1] = DANGLING_NAME;
+                return peeked = JSONToken.NAME;
+            }
+            case DANGLING_NAME -> {
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+            }
+            default -> throw new IllegalStateException("JSONReader is closed");
+        }
+        return peeked = peekValue();
+    }
+
+    private JSONToken peekValue() throws IOException {
+        final var c = nextNonWhitespace();
+        return switch (c) {
+            case '{' -> JSONToken.BEGIN_OBJECT;
+            case '[' -> JSONToken.BEGIN_ARRAY;
+            case '"' -> JSONToken.STRING;
+            case 't' -> {
+                readLiteral("rue");
+                peekedBoolean = true;
+                yield JSONToken.BOOLEAN;
+            }
+            case 'f' -> {
+                readLiteral("alse");
+                peekedBoolean = false;
+                yield JSONToken.BOOLEAN;
+            }
+            case 'n' -> {
+                readLiteral("ull");
+                yield JSONToken.NULL;
+            }
+            case '-', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> {
+                pos--;
+                readNumber();
+                yield JSONToken.NUMBER;
+            }
+            case -1 -> throw syntaxError("Unexpected end of input");
+            default -> throw syntaxError("Unexpected character '" + (char) c + "'");
+        };
+    }
+
+    public boolean hasNext() throws IOException {
+        final var token = peek();
+        return token != JSONToken.END_ARRAY && token != JSONToken.END_OBJECT && token != JSONToken.END_DOCUMENT;
+    }
+
+    public void beginArray() throws IOException {
+        expect(JSONToken.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(JSONToken.END_ARRAY);
+        stackSize--;
+    }
+
+    public void beginObject() throws IOException {
+        expect(JSONToken.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(JSONToken.END_OBJECT);
+        stackSize--;
+    }
+
+    public String nextName() throws IOException {
+        expect(JSONToken.NAME);
+        return readString(true);
+    }
+
+    public String nextString() throws IOException {
+        expect(JSONToken.STRING);
+        return readString(false);
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(JSONToken.BOOLEAN);
+        return peekedBoolean;
+    }
+
+    public void nextNull() throws IOException {
+        expect(JSONToken.NULL);
+    }
+
+    public JSONNumber nextNumber() throws IOException {
+        expect(JSONToken.NUMBER);
+        return toNumber();
+    }
+
+    public long nextLong() throws IOException {
+        expect(JSONToken.NUMBER);
+        if (peekedLongValid) {
+            return peekedNegative ? -peekedSignificand : peekedSignificand;
+        }
+        final var number = toNumber();
+        if (number.isLong()) {
+            return number.longValue();
+        }
+        throw syntaxError("Expected a long but was " + number.toJSONString());
+    }
+
+    public int nextInt() throws IOException {
+        final var longValue = nextLong();
+        if ((int) longValue != longValue) {
+            throw syntaxError("Expected an int but was " + longValue);
+        }
+        return (int) longValue;
+    }
+
+    public double nextDouble() throws IOException {
+        expect(JSONToken.NUMBER);
+        return toNumber().doubleValue();
+    }
+
+    // Containers are kept on an explicit stack, so nesting is bounded by the limits rather than the thread's stack.
+    public JSONElement nextElement() throws IOException {
+        final var first = peek();
+        if (first == JSONToken.NAME || first == JSONToken.END_ARRAY || first == JSONToken.END_OBJECT
+            || first == JSONToken.END_DOCUMENT) {
+            throw syntaxError("Expected a value but was " + first);
+        }
+
+        // the open containers, innermost last, and the name each open object is waiting on a value for
+        var builders = new Object[8];
+        var pendingNames = new String[8];
+        var depth = 0;
+        while (true) {
+            final JSONElement value;
+            switch (peek()) {
+                case BEGIN_ARRAY, BEGIN_OBJECT -> {
+                    final var isArray = peeked == JSONToken.BEGIN_ARRAY;
+                    if (isArray) {
+                        beginArray();
+                    } else {
+                        beginObject();
+                    }
+                    if (depth == builders.length) {
+                        builders = Arrays.copyOf(builders, depth * 2);
+                        pendingNames = Arrays.copyOf(pendingNames, depth * 2);
+                    }
+                    builders[depth++] = isArray ? new ArrayBuilder() : new ObjectBuilder(names);
+                    continue;
+                }
+                case NAME -> {
+                    pendingNames[depth - 1] = nextName();
+                    continue;
+                }
+                case END_ARRAY -> {
+                    endArray();
+                    value = ((ArrayBuilder) builders[--depth]).build();
+                    builders[depth] = null;
+                }
+                case END_OBJECT -> {
+                    endObject();
+                    value = ((ObjectBuilder) builders[--depth]).build();
+                    builders[depth] = null;
+                }
+                case NULL -> {
+                    nextNull();
+                    value = JSONNull.INSTANCE;
+                }
+                case BOOLEAN -> value = new JSONBoolean(nextBoolean());
+                case NUMBER -> value = nextNumber();
+                case STRING -> value = new JSONString(nextString());
+                default -> throw syntaxError("Expected a value but was " + peek());
+            }
+
+            if (depth == 0) {
+                return value;
+            }
+            if (builders[depth - 1] instanceof ArrayBuilder array) {
+                array.add(value);
+            } else {
+                ((ObjectBuilder) builders[depth - 1]).put(pendingNames[depth - 1], value);
+            }
+        }
+    }
+
+    public void skipValue() throws IOException {
+        var depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_ARRAY -> {
+                    beginArray();
+                    depth++;
+                }
+                case BEGIN_OBJECT -> {
+                    beginObject();
+                    depth++;
+                }
+                case END_ARRAY -> {
+                    endArray();
+                    depth--;
+                }
+                case END_OBJECT -> {
+                    endObject();
+                    depth--;
+                }
+                case NAME, STRING -> {
+                    peeked = null;
+                    skipString();
+                }
+                case END_DOCUMENT -> throw syntaxError("Expected a value but was " + JSONToken.END_DOCUMENT);
+                default -> peeked = null;
+            }
+        } while (depth > 0);
+    }
+
+    public long position() {
+        return bufferOffset + pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        peeked = null;
+        stack[0] = -1;
+        stackSize = 1;
+        try {
+            in.close();
+        } finally {
+            release();
+        }
+    }
+
+    // Hands a pooled reader back without closing its input.
+    void release() {
+        if (isPooled) {
+            isPooled = false;
+            in = null;
+            POOL.give(this);
+        }
+    }
+
+    private void expect(final JSONToken token) throws IOException {
+        if (peek() != token) {
+            throw syntaxError("Expected " + token + " but was " + peeked);
+        }
+        peeked = null;
+    }
+
+    private void push(final int scope) {
+        // the bottom of the stack is the document
+        if (stackSize > limits.maxDepth()) {
+            throw limits.depthExceeded(position() - 1);
+        }
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private JSONNumber toNumber() {
+        try {
+            return NumberParser.toNumber(scratch, 0, scratch.length(), peekedNegative, peekedSignificand, peekedDigits,
+                peekedExponent, peekedFraction);
+        } catch (final NumberFormatException e) {
+            throw syntaxError("Number out of range");
+        }
+    }
+
+    private void readNumber() throws IOException {
+        final var start = position();
+        scratch.setLength(0);
+        var c = peekChar();
+        peekedNegative = c == '-';
+        if (peekedNegative) {
+            scratch.append('-');
+            pos++;
+            c = peekChar();
+        }
+
+        peekedSignificand = 0;
+        peekedDigits = 0;
+        peekedExponent = 0;
+        peekedFraction = false;
+        if (c == '0') {
+            scratch.append('0');
+            pos++;
+        } else {
+            if (c < '0' || c > '9') {
+                throw syntaxError("Expected a digit");
+            }
+            while (c >= '0' && c <= '9') {
+                appendNumberChar(c, start);
+                if (peekedDigits < NumberParser.MAX_SIGNIFICAND_DIGITS) {
+                    peekedSignificand = peekedSignificand * 10 + (c - '0');
+                } else {
+                    peekedExponent++;
+                }
+                peekedDigits++;
+                pos++;
+                c = peekChar();
+            }
+        }
+
+        var hasExponent = false;
+        c = peekChar();
+        if (c == '.') {
+            scratch.append('.');
+            pos++;
+            c = peekChar();
+            if (c < '0' || c > '9') {
+                throw syntaxError("Expected a digit");
+            }
+            while (c >= '0' && c <= '9') {
+                appendNumberChar(c, start);
+                if (peekedDigits < NumberParser.MAX_SIGNIFICAND_DIGITS) {
+                    // leading zeros only move the exponent
+                    if (peekedDigits > 0 || c != '0') {
+                        peekedSignificand = peekedSignificand * 10 + (c - '0');
+                        peekedDigits++;
+                    }
+                    peekedExponent--;
+                } else {
+                    peekedDigits++;
+                }
+                pos++;
+                c = peekChar();
+            }
+            peekedFraction = true;
+        }
+        if (c == 'e' || c == 'E') {
+            scratch.append('e');
+            pos++;
+            c = peekChar();
+            final var isNegativeExponent = c == '-';
+            if (c == '-' || c == '+') {
+                appendNumberChar(c, start);
+                pos++;
+                c = peekChar();
+            }
+            if (c < '0' || c > '9') {
+                throw syntaxError("Expected a digit");
+            }
+            var explicitExponent = 0;
+            while (c >= '0' && c <= '9') {
+                appendNumberChar(c, start);
+                // saturate, the exact value only matters to BigDecimal
+                explicitExponent = Math.min(explicitExponent * 10 + (c - '0'), 1_000_000);
+                pos++;
+                c = peekChar();
+            }
+            peekedExponent += isNegativeExponent ? -explicitExponent : explicitExponent;
+            hasExponent = true;
+        }
+
+        // up to 18 digits can't overflow a long
+        peekedLongValid = !peekedFraction && !hasExponent && peekedDigits <= 18;
+    }
+
+    private void appendNumberChar(final int c, final long start) {
+        if (scratch.length() >= limits.maxNumberLength()) {
+            throw limits.numberLengthExceeded(start);
+        }
+        scratch.append((char) c);
+    }
+
+    private void readLiteral(final String rest) throws IOException {
+        if (!ensure(rest.length())) {
+            throw syntaxError("Unexpected end of input");
+        }
+        for (var idx = 0; idx < rest.length(); idx++) {
+            if (buffer[pos + idx] != rest.charAt(idx)) {
+                throw syntaxError("Invalid literal");
+            }
+        }
+        pos += rest.length();
+    }
+
+    // Names without escapes that don't straddle a refill go through the key cache.
+    private String readString(final boolean isName) throws IOException {
+        // just past the opening quote
+        final var start = position();
+        scratch.setLength(0);
+        while (true) {
+            var idx = pos;
+            while (idx < limit) {
+                final var currChar = buffer[idx];
+                if (currChar == '"') {
+                    if (bufferOffset + idx - start > limits.maxStringLength()) {
+                        throw limits.stringLengthExceeded(start - 1);
+                    }
+                    final String value;
+                    if (scratch.isEmpty()) {
+                        value = isName ? names.intern(buffer, pos, idx) : new String(buffer, pos, idx - pos);
+                    } else {
+                        value = scratch.append(buffer, pos, idx - pos).toString();
+                    }
+                    pos = idx + 1;
+                    return value;
+                }
+                if (currChar == '\\') {
+                    scratch.append(buffer, pos, idx - pos);
+                    pos = idx + 1;
+                    scratch.append(readEscape());
+                    idx = pos;
+                } else {
+                    idx++;
+                }
+            }
+            scratch.append(buffer, pos, idx - pos);
+            pos = idx;
+            if (position() - start > limits.maxStringLength()) {
+                throw limits.stringLengthExceeded(start - 1);
+            }
+            if (!fill(1)) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            while (pos < limit) {
+                final var currChar = buffer[pos++];
+                if (currChar == '"') {
+                    return;
+                }
+                if (currChar == '\\') {
+                    readEscape();
+                }
+            }
+            if (!fill(1)) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        if (!ensure(1)) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+        final var escaped = buffer[pos++];
+        return switch (escaped) {
+            case '"', '\'', '/', '\\' -> escaped;
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'u' -> {
+                if (!ensure(4)) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                var unicodeValue = 0;
+                for (var hexIdx = 0; hexIdx < 4; hexIdx++) {
+                    final var hexValue = StringParser.hexValue(buffer[pos++]);
+                    if (hexValue < 0) {
+                        throw syntaxError("Invalid escape sequence");
+                    }
+                    unicodeValue = (unicodeValue << 4) | hexValue;
+                }
+                yield (char) unicodeValue;
+            }
+            default -> throw syntaxError("Invalid escape sequence");
+        };
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (pos < limit || fill(1)) {
+            final var currChar = buffer[pos++];
+            if (!StringParser.isWhitespace(currChar)) {
+                return currChar;
+            }
+        }
+        return -1;
+    }
+
+    private int peekChar() throws IOException {
+        return pos < limit || fill(1) ? buffer[pos] : -1;
+    }
+
+    private boolean ensure(final int count) throws IOException {
+        return limit - pos >= count || fill(count);
+    }
+
+    // Keeps the unread chars and reads until at least count of them are buffered.
+    private boolean fill(final int count) throws IOException {
+        bufferOffset += pos;
+        System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+        limit -= pos;
+        pos = 0;
+        while (limit < count) {
+            final var read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                return false;
+            }
+            limit += read;
+            if (bufferOffset + limit > limits.maxDocumentSize()) {
+                throw limits.documentSizeExceeded(limits.maxDocumentSize());
+            }
+        }
+        return true;
+    }
+
+    private JSONException syntaxError(final String message) {
+        return new JSONException(message, position());
+    }
+}
@@ -65,6 +65,6 @@ public record JSONString(String value) implements JSONElement {
 
     @Override
     public String toJSONString() {
-        return "\"" + JavaSON.escapeString(value) + "\"";
+        return JSONWriter.quote(value);
     }
 }
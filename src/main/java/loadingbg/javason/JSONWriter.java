@@ -0,0 +1,466 @@
+package loadingbg.javason;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+public final class JSONWriter implements Closeable, Flushable {
+    static final int BUFFER_SIZE = 8192;
+    // what goes after the backslash for each char that has to be escaped, 'u' for the ones written as a unicode
+    // escape; nothing past '\\' needs escaping
+    private static final char[] ESCAPES = new char['\\' + 1];
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    static {
+        Arrays.fill(ESCAPES, 0, ' ', 'u');
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private static final Pool<JSONWriter> POOL = new Pool<>();
+
+    private Appendable out;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+    private boolean isPooled;
+
+    public JSONWriter(final Appendable out) {
+        this.out = Objects.requireNonNull(out);
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    public JSONWriter(final OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    // A writer from a pool shared by all threads. close() hands it back after closing out as usual, and it must
+    // not be used after that.
+    public static JSONWriter pooled(final Appendable out) {
+        final var pooled = POOL.take();
+        final var writer = pooled != null ? pooled.reset(out) : new JSONWriter(out);
+        writer.isPooled = true;
+        return writer;
+    }
+
+    // Starts a new document on out, keeping the buffer; whatever wasn't flushed to the previous output is dropped.
+    public JSONWriter reset(final Appendable out) {
+        this.out = Objects.requireNonNull(out);
+        pos = 0;
+        if (stack.length > 1024) {
+            stack = new int[32];
+        }
+        stackSize = 1;
+        stack[0] = EMPTY_DOCUMENT;
+        return this;
+    }
+
+    public JSONWriter beginArray() throws IOException {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        write('[');
+        return this;
+    }
+
+    public JSONWriter endArray() throws IOException {
+        final var scope = stack[stackSize - 1];
+        if (scope != EMPTY_ARRAY && scope != NONEMPTY_ARRAY) {
+            throw new IllegalStateException("Not inside an array");
+        }
+        stackSize--;
+        write(']');
+        return this;
+    }
+
+    public JSONWriter beginObject() throws IOException {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        write('{');
+        return this;
+    }
+
+    public JSONWriter endObject() throws IOException {
+        final var scope = stack[stackSize - 1];
+        if (scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT) {
+            throw new IllegalStateException("Not inside an object or a value is missing");
+        }
+        stackSize--;
+        write('}');
+        return this;
+    }
+
+    public JSONWriter name(final String name) throws IOException {
+        final var scope = stack[stackSize - 1];
+        if (scope == NONEMPTY_OBJECT) {
+            write(',');
+        } else if (scope != EMPTY_OBJECT) {
+            throw new IllegalStateException("Names are only allowed inside an object");
+        }
+        stack[stackSize - 1] = DANGLING_NAME;
+        write('"');
+        writeEscaped(name);
+        write('"');
+        write(':');
+        return this;
+    }
+
+    public JSONWriter value(final String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        write('"');
+        writeEscaped(value);
+        write('"');
+        return this;
+    }
+
+    public JSONWriter value(final boolean value) throws IOException {
+        beforeValue();
+        write(value ? "true" : "false");
+        return this;
+    }
+
+    public JSONWriter value(final long value) throws IOException {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    public JSONWriter value(final float value) throws IOException {
+        beforeValue();
+        write(Float.toString(value));
+        return this;
+    }
+
+    public JSONWriter value(final double value) throws IOException {
+        beforeValue();
+        write(Double.toString(value));
+        return this;
+    }
+
+    public JSONWriter value(final Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        switch (value) {
+            case Long longValue -> writeLong(longValue);
+            case Integer intValue -> writeLong(intValue);
+            case Short shortValue -> writeLong(shortValue);
+            case Byte byteValue -> writeLong(byteValue);
+            default -> write(value.toString());
+        }
+        return this;
+    }
+
+    public JSONWriter nullValue() throws IOException {
+        beforeValue();
+        write("null");
+        return this;
+    }
+
+    public JSONWriter value(final JSONElement value) throws IOException {
+        switch (value) {
+            case null -> nullValue();
+            case JSONNull nullValue -> nullValue();
+            case JSONBoolean bool -> value(bool.value());
+            case JSONNumber num -> num.write(this);
+            case JSONString str -> value(str.value());
+            case JSONArray arr when arr.value() instanceof PackedNumberList packed -> packed.write(this);
+            case JSONArray arr -> {
+                beginArray();
+                for (final var element : arr.value()) {
+                    value(element);
+                }
+                endArray();
+            }
+            case JSONObject obj when obj.value() instanceof ShapedMap shaped -> shaped.write(this);
+            case JSONObject obj -> {
+                beginObject();
+                for (final var entry : obj.value().entrySet()) {
+                    name(entry.getKey());
+                    value(entry.getValue());
+                }
+                endObject();
+            }
+        }
+        return this;
+    }
+
+    // Writes obj like JavaSON.toJSON(obj).toJSONString() without building the tree; object keys may come in another order.
+    public JSONWriter write(final Object obj) throws IOException {
+        switch (obj) {
+            case null -> nullValue();
+            case Boolean bool -> value(bool.booleanValue());
+            case Number num -> value(num);
+            case CharSequence str -> value(str.toString());
+            case Character character -> value(character.toString());
+            case JSON json -> value(json.toJSON());
+            case JSONElement element -> value(element);
+            case Object[] arr -> {
+                beginArray();
+                for (final var element : arr) {
+                    write(element);
+                }
+                endArray();
+            }
+            case int[] arr -> {
+                beginArray();
+                for (final var element : arr) {
+                    value(element);
+                }
+                endArray();
+            }
+            case long[] arr -> {
+                beginArray();
+                for (final var element : arr) {
+                    value(element);
+                }
+                endArray();
+            }
+            case double[] arr -> {
+                beginArray();
+                for (final var element : arr) {
+                    value(element);
+                }
+                endArray();
+            }
+            // the other primitive arrays, element by element through their boxes
+            case Object arr when arr.getClass().isArray() -> {
+                beginArray();
+                final var length = Array.getLength(arr);
+                for (var idx = 0; idx < length; idx++) {
+                    write(Array.get(arr, idx));
+                }
+                endArray();
+            }
+            case List<?> list -> {
+                beginArray();
+                for (final var element : list) {
+                    write(element);
+                }
+                endArray();
+            }
+            case Map<?, ?> map -> {
+                beginObject();
+                for (final var entry : map.entrySet()) {
+                    name(entry.getKey().toString());
+                    write(entry.getValue());
+                }
+                endObject();
+            }
+            default -> {
+                @SuppressWarnings("unchecked")
+                final var codec = (JSONCodec<Object>) Codecs.of(obj.getClass());
+                if (codec != null) {
+                    codec.write(obj, this);
+                } else {
+                    SerializerPlan.of(obj.getClass()).write(obj, this);
+                }
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        if (out instanceof Flushable flushable) {
+            flushable.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            if (out instanceof Closeable closeable) {
+                closeable.close();
+            }
+        } finally {
+            release();
+        }
+    }
+
+    // Hands a pooled writer back without closing its output.
+    void release() {
+        if (isPooled) {
+            isPooled = false;
+            out = null;
+            POOL.give(this);
+        }
+    }
+
+    private void beforeValue() throws IOException {
+        switch (stack[stackSize - 1]) {
+            case EMPTY_DOCUMENT -> stack[0] = NONEMPTY_DOCUMENT;
+            // top-level values go one per line, which is what NDJSON needs
+            case NONEMPTY_DOCUMENT -> buffer[reserve(1)] = '\n';
+            case EMPTY_ARRAY -> stack[stackSize - 1] = NONEMPTY_ARRAY;
+            case NONEMPTY_ARRAY -> buffer[reserve(1)] = ',';
+            case DANGLING_NAME -> stack[stackSize - 1] = NONEMPTY_OBJECT;
+            default -> throw new IllegalStateException("Values inside an object need a name");
+        }
+    }
+
+    private void push(final int scope) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private void writeLong(final long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            write(Long.toString(value));
+            return;
+        }
+        var remaining = Math.abs(value);
+        var digits = 1;
+        for (var bound = 10L; digits < 19 && remaining >= bound; bound *= 10) {
+            digits++;
+        }
+        final var length = value < 0 ? digits + 1 : digits;
+        final var start = reserve(length);
+        var idx = start + length;
+        do {
+            buffer[--idx] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            buffer[start] = '-';
+        }
+    }
+
+    private void write(final char c) throws IOException {
+        buffer[reserve(1)] = c;
+    }
+
+    private void write(final String str) throws IOException {
+        write(str, 0, str.length());
+    }
+
+    private void write(final String str, final int start, final int end) throws IOException {
+        var idx = start;
+        while (idx < end) {
+            if (pos == buffer.length) {
+                flushBuffer();
+            }
+            final var count = Math.min(end - idx, buffer.length - pos);
+            str.getChars(idx, idx + count, buffer, pos);
+            pos += count;
+            idx += count;
+        }
+    }
+
+    // Copies the runs between the chars that need escaping in bulk, so a string without any is a single copy.
+    private void writeEscaped(final String str) throws IOException {
+        final var length = str.length();
+        var runStart = 0;
+        for (var idx = 0; idx < length; idx++) {
+            final var currChar = str.charAt(idx);
+            if (needsEscape(currChar)) {
+                write(str, runStart, idx);
+                runStart = idx + 1;
+                final var start = reserve(6);
+                pos = start + escape(currChar, buffer, start);
+            }
+        }
+        write(str, runStart, length);
+    }
+
+    // The quoted and escaped str, built without a writer for the single strings JSONString.toJSONString asks for.
+    static String quote(final String str) {
+        final var length = str.length();
+        var idx = 0;
+        while (idx < length && !needsEscape(str.charAt(idx))) {
+            idx++;
+        }
+        if (idx == length) {
+            return "\"" + str + "\"";
+        }
+
+        final var builder = new StringBuilder(length + 16).append('"').append(str, 0, idx);
+        final var escaped = new char[6];
+        var runStart = idx;
+        for (; idx < length; idx++) {
+            final var currChar = str.charAt(idx);
+            if (needsEscape(currChar)) {
+                builder.append(str, runStart, idx).append(escaped, 0, escape(currChar, escaped, 0));
+                runStart = idx + 1;
+            }
+        }
+        return builder.append(str, runStart, length).append('"').toString();
+    }
+
+    private static boolean needsEscape(final char c) {
+        return c < ESCAPES.length && ESCAPES[c] != 0;
+    }
+
+    // Writes the escape sequence for c at out[start] and returns its length.
+    private static int escape(final char c, final char[] out, final int start) {
+        out[start] = '\\';
+        out[start + 1] = ESCAPES[c];
+        if (ESCAPES[c] != 'u') {
+            return 2;
+        }
+        out[start + 2] = '0';
+        out[start + 3] = '0';
+        out[start + 4] = HEX_DIGITS[c >> 4];
+        out[start + 5] = HEX_DIGITS[c & 0xF];
+        return 6;
+    }
+
+    // Returns the buffer index at which count chars (at most 20) can be written.
+    private int reserve(final int count) throws IOException {
+        if (pos + count > buffer.length) {
+            flushBuffer();
+        }
+        final var start = pos;
+        pos += count;
+        return start;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos == 0) {
+            return;
+        }
+        switch (out) {
+            case Writer writer -> writer.write(buffer, 0, pos);
+            case StringBuilder builder -> builder.append(buffer, 0, pos);
+            default -> out.append(CharBuffer.wrap(buffer, 0, pos));
+        }
+        pos = 0;
+    }
+
+    static String toJSONString(final JSONElement element) {
+        final var builder = new StringBuilder();
+        final var writer = pooled(builder);
+        try {
+            writer.value(element).flush();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writer.release();
+        }
+        return builder.toString();
+    }
+}
@@ -1,7 +1,11 @@
 package loadingbg.javason;
 
+import java.io.*;
 import java.lang.reflect.*;
-import java.math.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.text.*;
 import java.util.*;
 import java.util.stream.*;
 
@@ -14,328 +18,199 @@ public final class JavaSON {
             case Boolean bool -> new JSONBoolean(bool);
             case Number num -> new JSONNumber(num);
             case CharSequence str -> new JSONString(str.toString());
+            case Character character -> new JSONString(character.toString());
             case JSON json -> json.toJSON();
+            case JSONElement element -> element;
             case Object[] arr -> new JSONArray(Arrays.stream(arr).map(JavaSON::toJSON).toList());
+            // primitive arrays, element by element through their boxes
+            case Object arr when arr.getClass().isArray() -> new JSONArray(
+                    IntStream.range(0, Array.getLength(arr)).mapToObj(idx -> toJSON(Array.get(arr, idx))).toList());
             case List<?> list -> new JSONArray(list.stream().map(JavaSON::toJSON).toList());
             case Map<?, ?> map -> new JSONObject(
                     map.entrySet()
                         .stream()
-                        .collect(Collectors.toMap(e -> escapeString(e.getKey().toString()), e -> toJSON(e.getValue()))));
+                        .collect(Collectors.toMap(e -> e.getKey().toString(), e -> toJSON(e.getValue()))));
             default -> {
-                final var seenKeys = new HashMap<String, Integer>();
-                final var methods = obj.getClass().getDeclaredMethods();
-                for (final var method : methods) {
-                    if (method.getAnnotation(JSONField.class) == null || Modifier.isPrivate(method.getModifiers())) {
-                        continue;
-                    }
-                    seenKeys.compute(method.getAnnotation(JSONField.class).value(), (k, v) -> v == null ? 1 : v + 1);
-                }
-                yield new JSONObject(Arrays.stream(methods)
-                    .filter(method -> seenKeys.get(method.getAnnotation(JSONField.class).value()) == 1)
-                    .collect(Collectors.toMap(
-                        method -> escapeString(method.getAnnotation(JSONField.class).value()),
-                        method -> {
-                            try {
-                                return toJSON(method.invoke(obj));
-                            } catch (final Exception e) {
-                                return null;
-                            }
-                        })));
+                @SuppressWarnings("unchecked")
+                final var codec = (JSONCodec<Object>) Codecs.of(obj.getClass());
+                yield codec != null ? codec.toJSON(obj) : SerializerPlan.of(obj.getClass()).toJSON(obj);
             }
         };
     }
 
-    public static Optional<Map.Entry<JSONElement, String>> parseJSON(final String json) {
-        final var stripped = json.stripLeading();
-        return parseNull(stripped)
-            .or(() -> parseBoolean(stripped))
-            .or(() -> parseNumber(stripped))
-            .or(() -> parseString(stripped))
-            .or(() -> parseArray(stripped))
-            .or(() -> parseObject(stripped));
+    public static void write(final Object obj, final Appendable out) throws IOException {
+        final var writer = JSONWriter.pooled(out);
+        try {
+            writer.write(obj).flush();
+        } finally {
+            writer.release();
+        }
     }
 
-    private static Optional<Map.Entry<JSONElement, String>> parseNull(final String json) {
-        if (json.startsWith("null")) {
-            return Optional.of(Map.entry(JSONNull.INSTANCE, json.substring(4)));
-        }
-        return Optional.empty();
+    public static Optional<Map.Entry<JSONElement, String>> parseJSON(final String json) {
+        final var position = new ParsePosition(0);
+        return parseJSON(json, position).map(element -> Map.entry(element, json.substring(position.getIndex())));
     }
 
-    private static Optional<Map.Entry<JSONElement, String>> parseBoolean(final String json) {
-        if (json.startsWith("true")) {
-            return Optional.of(Map.entry(new JSONBoolean(true), json.substring(4)));
-        } else if (json.startsWith("false")) {
-            return Optional.of(Map.entry(new JSONBoolean(false), json.substring(5)));
-        }
-        return Optional.empty();
+    public static Optional<JSONElement> parseJSON(final String json, final ParsePosition position) {
+        return parseJSON(json, position, JSONLimits.DEFAULT);
     }
 
-    private static Optional<Map.Entry<JSONElement, String>> parseNumber(final String json) {
-        if (json.isEmpty()) {
-            return Optional.empty();
+    // Malformed input gives an empty Optional, input over the limits throws JSONException. Parsed arrays and
+    // objects are read-only, whatever their contents; with() and set() on them return updated copies.
+    public static Optional<JSONElement> parseJSON(final String json, final ParsePosition position, final JSONLimits limits) {
+        try (final var parser = JSONParser.pooled(limits)) {
+            return parser.parse(json, position);
         }
-        final var len = json.length();
+    }
 
-        final var isNegative = json.charAt(0) == '-';
-        var idx = isNegative ? 1 : 0;
-        if (idx >= len) {
-            return Optional.empty();
-        }
+    // The bytes are UTF-8. On success the buffer's position is moved past the value, on failure it is left as is.
+    public static Optional<JSONElement> parseJSON(final ByteBuffer json) {
+        return parseJSON(json, JSONLimits.DEFAULT);
+    }
 
-        final var whole = new StringBuilder();
-        if (json.charAt(1) == '0') {
-            whole.append('0');
-        } else {
-            while (idx < len && Character.isDigit(json.charAt(idx))) {
-                whole.append(json.charAt(idx));
-                idx++;
-            }
-        }
-        if (whole.isEmpty()) {
-            return Optional.empty();
-        }
-        if (idx >= len) {
-            return Optional.of(Map.entry(parseNum(isNegative, whole.toString(), "", ""), ""));
+    public static Optional<JSONElement> parseJSON(final ByteBuffer json, final JSONLimits limits) {
+        try (final var parser = JSONParser.pooled(limits)) {
+            return parser.parse(json);
         }
+    }
 
-        final var frac = new StringBuilder();
-        final var exp = new StringBuilder();
+    public static Optional<JSONElement> parseJSON(final byte[] json) {
+        return parseJSON(ByteBuffer.wrap(json));
+    }
 
-        if (json.charAt(idx) == '.') {
-            idx++;
-            while (idx < len && Character.isDigit(json.charAt(idx))) {
-                frac.append(json.charAt(idx));
-                idx++;
-            }
-            if (frac.isEmpty()) {
-                return Optional.empty();
-            }
-        }
-        if (idx >= len) {
-            return Optional.of(Map.entry(parseNum(isNegative, whole.toString(), frac.toString(), ""), ""));
-        }
+    public static Optional<JSONElement> parseJSON(final Path file) throws IOException {
+        return parseJSON(map(file));
+    }
 
-        if (json.charAt(idx) == 'e' || json.charAt(idx) == 'E') {
-            idx++;
-            if (idx >= len) {
-                return Optional.empty();
-            }
-            if (json.charAt(idx) == '-') {
-                exp.append('-');
-                idx++;
-            } else if (json.charAt(idx) == '+') {
-                idx++;
-            }
+    // Only the outermost container is read up front; nested values are located by matching brackets and quotes,
+    // then parsed (and checked) when they are first accessed, which throws JSONException if they are malformed.
+    public static Optional<JSONElement> parseJSONLazy(final String json) {
+        return parseJSONLazy(json, new ParsePosition(0));
+    }
 
-            while (idx < len && Character.isDigit(json.charAt(idx))) {
-                exp.append(json.charAt(idx));
-                idx++;
-            }
-            if (exp.isEmpty()) {
-                return Optional.empty();
-            }
+    public static Optional<JSONElement> parseJSONLazy(final String json, final ParsePosition position) {
+        final var parser = StringParser.lazy(json, position.getIndex(), JSONLimits.DEFAULT);
+        final var element = parser.parseValue();
+        if (element == null) {
+            position.setErrorIndex(parser.errorIndex());
+            return Optional.empty();
         }
-        return Optional.of(Map.entry(parseNum(isNegative, whole.toString(), frac.toString(), exp.toString()), json.substring(idx)));
+        position.setIndex(parser.index());
+        return Optional.of(element);
     }
 
-    private static JSONNumber parseNum(final boolean isNegative, final String whole, final String frac, final String exp) {
-        final var wholePart = (isNegative ? "-" : "") + whole;
-        if (frac.isEmpty()) {
-            var bigInt = new BigInteger(wholePart);
-            if (!exp.isEmpty()) {
-                // try-catch parseInt?
-                bigInt = bigInt.pow(Integer.parseInt(exp));
-            }
-
-            final var longValue = bigInt.longValue();
-            if (!bigInt.equals(BigInteger.valueOf(longValue))) {
-                return new JSONNumber(bigInt);
-            }
-
-            final var byteValue = bigInt.byteValue();
-            if (byteValue == longValue) {
-                return new JSONNumber(byteValue);
-            }
+    // The lazy values keep the buffer (or the mapped file) reachable until they have all been parsed.
+    public static Optional<JSONElement> parseJSONLazy(final ByteBuffer json) {
+        return parseBytes(ByteParser.lazy(json, json.position(), JSONLimits.DEFAULT), json);
+    }
 
-            final var shortValue = bigInt.shortValue();
-            if (shortValue == longValue) {
-                return new JSONNumber(shortValue);
-            }
+    public static Optional<JSONElement> parseJSONLazy(final Path file) throws IOException {
+        return parseJSONLazy(map(file));
+    }
 
-            final var intValue = bigInt.intValue();
-            if (intValue == longValue) {
-                return new JSONNumber(intValue);
-            }
+    // The array at path (object keys and array indices, as dig takes them) is found by skimming the document, then
+    // its elements are parsed in full, independently of one another. The stream is sized and splits evenly, so
+    // parallel() spreads the elements over all cores. A malformed element throws JSONException once it is reached.
+    public static Optional<Stream<JSONElement>> streamArray(final String json, final Object... path) {
+        return parseJSONLazy(json).flatMap(root -> elements(root, path));
+    }
 
-            return new JSONNumber(longValue);
-        }
+    public static Optional<Stream<JSONElement>> streamArray(final ByteBuffer json, final Object... path) {
+        return parseJSONLazy(json.duplicate()).flatMap(root -> elements(root, path));
+    }
 
-        var bigDecimal = new BigDecimal(wholePart + frac + exp);
+    public static Optional<Stream<JSONElement>> streamArray(final Path file, final Object... path) throws IOException {
+        return streamArray(map(file), path);
+    }
 
-        final var doubleValue = bigDecimal.doubleValue();
-        if (!bigDecimal.equals(BigDecimal.valueOf(doubleValue))) {
-            return new JSONNumber(bigDecimal);
-        }
+    public static Optional<JSONArray> parseArrayParallel(final String json, final Object... path) {
+        return streamArray(json, path).map(JavaSON::collectParallel);
+    }
 
-        final var floatValue = bigDecimal.floatValue();
-        if (floatValue == doubleValue) {
-            return new JSONNumber(floatValue);
-        }
+    public static Optional<JSONArray> parseArrayParallel(final ByteBuffer json, final Object... path) {
+        return streamArray(json, path).map(JavaSON::collectParallel);
+    }
 
-        return new JSONNumber(doubleValue);
+    public static Optional<JSONArray> parseArrayParallel(final Path file, final Object... path) throws IOException {
+        return streamArray(file, path).map(JavaSON::collectParallel);
     }
 
-    private static Optional<Map.Entry<JSONElement, String>> parseString(final String json) {
-        if (json.isEmpty() || json.charAt(0) != '"') {
-            return Optional.empty();
-        }
+    private static Optional<Stream<JSONElement>> elements(final JSONElement root, final Object... path) {
+        final Optional<JSONElement> located;
+        if (path.length == 0) {
+            located = Optional.of(root);
+        } else {
+            final var subkeys = Arrays.copyOfRange(path, 1, path.length);
+            located = switch (path[0]) {
+                case String key when root instanceof JSONObject object -> object.dig(key, subkeys);
+                case Integer index when root instanceof JSONArray array -> array.dig(index, subkeys);
+                default -> Optional.empty();
+            };
+        }
+        return located.flatMap(element -> switch (element) {
+            case JSONArray array when array.value() instanceof LazyArrayList lazy -> Optional.of(lazy.parseAll());
+            // empty arrays aren't skimmed
+            case JSONArray array -> Optional.of(array.value().stream());
+            default -> Optional.empty();
+        });
+    }
 
-        final var len = json.length();
-        var idx = 1;
-        final var valueBuilder = new StringBuilder();
-        while (idx < len) {
-            final var currChar = json.charAt(idx);
-            if (currChar == '"') {
-                return Optional.of(Map.entry(new JSONString(valueBuilder.toString()), json.substring(idx + 1)));
-            } else if (currChar == '\\') {
-                if (idx + 1 >= len) {
-                    return Optional.empty();
-                }
-                final var escaped = json.charAt(idx + 1);
-                switch (escaped) {
-                    case '"', '\'', '/' -> valueBuilder.append(escaped);
-                    case 'b' -> valueBuilder.append('\b');
-                    case 'f' -> valueBuilder.append('\f');
-                    case 'n' -> valueBuilder.append('\n');
-                    case 'r' -> valueBuilder.append('\r');
-                    case 't' -> valueBuilder.append('\t');
-                    case 'u' -> {
-                        if (idx + 5 >= len) {
-                            return Optional.empty();
-                        }
-                        // hexIdx includes the 'u' symbol
-                        var unicodeValue = 0L;
-                        for (var hexIdx = 1; hexIdx < 5; hexIdx++) {
-                            final var hexChar = json.charAt(idx + hexIdx);
-                            switch (hexChar) {
-                                case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> unicodeValue = (unicodeValue << 4) | (hexChar - '0');
-                                case 'A', 'B', 'C', 'D', 'E', 'F' -> unicodeValue = (unicodeValue << 4) | (hexChar - 'A' + 10);
-                                case 'a', 'b', 'c', 'd', 'e', 'f' -> unicodeValue = (unicodeValue << 4) | (hexChar - 'a' + 10);
-                                default -> {
-                                    return Optional.empty();
-                                }
-                            }
-                        }
-                        valueBuilder.append((char) unicodeValue);
-                    }
-                    default -> {
-                        return Optional.empty();
-                    }
-                }
-            } else {
-                valueBuilder.append(currChar);
-            }
-            idx++;
-        }
-        return Optional.empty();
+    private static JSONArray collectParallel(final Stream<JSONElement> elements) {
+        final var builder = new ArrayBuilder();
+        elements.parallel().toList().forEach(builder::add);
+        return builder.build();
     }
 
-    private static Optional<Map.Entry<JSONElement, String>> parseArray(String json) {
-        if (json.isEmpty() || json.charAt(0) != '[') {
+    private static Optional<JSONElement> parseBytes(final ByteParser parser, final ByteBuffer json) {
+        final var element = parser.parseValue();
+        if (element == null) {
             return Optional.empty();
         }
+        json.position(parser.index());
+        return Optional.of(element);
+    }
 
-        json = json.substring(1).stripLeading();
-        final var valueList = new ArrayList<JSONElement>();
-        var expectsEnd = false;
-        var expectsValue = false;
-        while (!json.isEmpty()) {
-            if (json.charAt(0) == ']') {
-                return expectsValue ? Optional.empty() : Optional.of(Map.entry(new JSONArray(valueList), json.substring(1)));
-            }
-
-            if (expectsEnd) {
-                return Optional.empty();
-            }
-
-            final var parsedValue = parseJSON(json);
-            if (parsedValue.isEmpty()) {
-                return Optional.empty();
-            }
-            final var currValue = parsedValue.get();
-
-            valueList.add(currValue.getKey());
-            json = currValue.getValue().stripLeading();
-            if (json.charAt(0) == ',') {
-                json = json.substring(1).stripLeading();
-                expectsValue = true;
-            } else {
-                expectsEnd = true;
-                expectsValue = false;
+    private static ByteBuffer map(final Path file) throws IOException {
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final var size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than the 2 GiB a single buffer can map");
             }
+            // the mapping outlives the channel
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
         }
-        return Optional.empty();
     }
 
-    private static Optional<Map.Entry<JSONElement, String>> parseObject(String json) {
-        if (json.isEmpty() || json.charAt(0) != '{') {
-            return Optional.empty();
+    public static <T> T parse(final String json, final Class<T> type) {
+        try {
+            return parse(new StringReader(json), type);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        json = json.substring(1).stripLeading();
-        final var valueMap = new HashMap<String, JSONElement>();
-        var expectsEnd = false;
-        var expectsValue = false;
-        while (!json.isEmpty()) {
-            if (json.charAt(0) == '}') {
-                return expectsValue ? Optional.empty() : Optional.of(Map.entry(new JSONObject(valueMap), json.substring(1)));
-            }
-
-            if (expectsEnd) {
-                return Optional.empty();
-            }
-
-            final var parsedKey = parseString(json);
-            if (parsedKey.isEmpty()) {
-                return Optional.empty();
-            }
-            final var currKey = parsedKey.get();
-
-            json = currKey.getValue().stripLeading();
-            if (json.charAt(0) != ':') {
-                return Optional.empty();
-            }
-            json = json.substring(1).stripLeading();
-
-            final var parsedValue = parseJSON(json);
-            if (parsedValue.isEmpty()) {
-                return Optional.empty();
-            }
-            final var currValue = parsedValue.get();
+    public static <T> T parse(final Reader json, final Class<T> type) throws IOException {
+        return parse(json, type, JSONLimits.DEFAULT);
+    }
 
-            valueMap.put(currKey.getKey().asString().get().value(), currValue.getKey());
-            json = currValue.getValue().stripLeading();
-            if (json.charAt(0) == ',') {
-                json = json.substring(1).stripLeading();
-                expectsValue = true;
-            } else {
-                expectsEnd = true;
-                expectsValue = false;
+    @SuppressWarnings("unchecked")
+    public static <T> T parse(final Reader json, final Class<T> type, final JSONLimits limits) throws IOException {
+        final var reader = JSONReader.pooled(json, limits);
+        try {
+            final var value = Binder.of(type).read(reader);
+            if (reader.peek() != JSONToken.END_DOCUMENT) {
+                throw new JSONException("Unexpected data after the value", reader.position());
             }
+            return (T) value;
+        } finally {
+            reader.release();
         }
-        return Optional.empty();
     }
 
-    static String escapeString(final String str) {
-        return str
-            .replace("\t", "\\t")
-            .replace("\b", "\\b")
-            .replace("\n", "\\n")
-            .replace("\r", "\\r")
-            .replace("\f", "\\f")
-            .replace("'", "\\'")
-            .replace("\"", "\\\"")
-            .replace("\\", "\\\\");
+    // Binds the reader's next value, which is how codecs read the values of their members.
+    @SuppressWarnings("unchecked")
+    public static <T> T read(final JSONReader reader, final Class<T> type) throws IOException {
+        return (T) Binder.of(type).read(reader);
     }
 }
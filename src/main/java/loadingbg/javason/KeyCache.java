@@ -0,0 +1,128 @@
+package loadingbg.javason;
+
+import java.nio.*;
+import java.util.*;
+
+// Hands out the same String for an object key the parser has seen before, so records that repeat the same field
+// names share one copy of each name (and its cached hash code), and the same Shape for a repeated key sequence.
+// The tables are small and lossy: a colliding entry just replaces the old one. The cache may be shared between
+// threads, where a race costs no more than a miss.
+final class KeyCache {
+    private static final int SIZE = 512;
+    private static final int SHAPES = 64;
+    // longer keys are rarely repeated and are costly to compare
+    private static final int MAX_LENGTH = 32;
+
+    private String[] keys;
+    private Shape[] shapes;
+
+    String intern(final String json, final int start, final int end) {
+        final var length = end - start;
+        if (length > MAX_LENGTH) {
+            return json.substring(start, end);
+        }
+        var hash = 0;
+        for (var idx = start; idx < end; idx++) {
+            hash = 31 * hash + json.charAt(idx);
+        }
+        final var table = table();
+        final var slot = slot(hash);
+        final var cached = table[slot];
+        if (cached != null && cached.length() == length && json.regionMatches(start, cached, 0, length)) {
+            return cached;
+        }
+        final var key = json.substring(start, end);
+        table[slot] = key;
+        return key;
+    }
+
+    String intern(final char[] json, final int start, final int end) {
+        final var length = end - start;
+        if (length > MAX_LENGTH) {
+            return new String(json, start, length);
+        }
+        var hash = 0;
+        for (var idx = start; idx < end; idx++) {
+            hash = 31 * hash + json[idx];
+        }
+        final var table = table();
+        final var slot = slot(hash);
+        final var cached = table[slot];
+        if (cached != null && cached.length() == length) {
+            var idx = 0;
+            while (idx < length && cached.charAt(idx) == json[start + idx]) {
+                idx++;
+            }
+            if (idx == length) {
+                return cached;
+            }
+        }
+        final var key = new String(json, start, length);
+        table[slot] = key;
+        return key;
+    }
+
+    // The bytes must be ASCII.
+    String intern(final ByteBuffer json, final int start, final int end) {
+        final var length = end - start;
+        if (length > MAX_LENGTH) {
+            return ByteParser.ascii(json, start, end);
+        }
+        var hash = 0;
+        for (var idx = start; idx < end; idx++) {
+            hash = 31 * hash + json.get(idx);
+        }
+        final var table = table();
+        final var slot = slot(hash);
+        final var cached = table[slot];
+        if (cached != null && cached.length() == length) {
+            var idx = 0;
+            while (idx < length && cached.charAt(idx) == json.get(start + idx)) {
+                idx++;
+            }
+            if (idx == length) {
+                return cached;
+            }
+        }
+        final var key = ByteParser.ascii(json, start, end);
+        table[slot] = key;
+        return key;
+    }
+
+    // Returns null when a key repeats.
+    Shape shape(final String[] keys, final int count) {
+        var hash = count;
+        for (var idx = 0; idx < count; idx++) {
+            hash = 31 * hash + keys[idx].hashCode();
+        }
+        var table = shapes;
+        if (table == null) {
+            table = new Shape[SHAPES];
+            shapes = table;
+        }
+        final var slot = (hash ^ hash >>> 16) & (SHAPES - 1);
+        final var cached = table[slot];
+        if (cached != null && cached.matches(keys, count)) {
+            return cached;
+        }
+        final var shape = Shape.of(Arrays.copyOf(keys, count));
+        if (shape != null) {
+            table[slot] = shape;
+        }
+        return shape;
+    }
+
+    // allocated on the first key, so documents without objects don't pay for it
+    private String[] table() {
+        var table = keys;
+        if (table == null) {
+            table = new String[SIZE];
+            keys = table;
+        }
+        return table;
+    }
+
+    private static int slot(final int hash) {
+        return (hash ^ hash >>> 16) & (SIZE - 1);
+    }
+}
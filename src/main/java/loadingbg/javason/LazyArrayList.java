@@ -0,0 +1,39 @@
+package loadingbg.javason;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+
+// A read-only array whose elements were only located up front and are parsed on first access.
+final class LazyArrayList extends AbstractList<JSONElement> implements RandomAccess {
+    private final LazySource source;
+    private final int[] offsets;
+    private final AtomicReferenceArray<JSONElement> values;
+
+    LazyArrayList(final LazySource source, final int[] offsets) {
+        this.source = source;
+        this.offsets = offsets;
+        this.values = new AtomicReferenceArray<>(offsets.length);
+    }
+
+    @Override
+    public JSONElement get(final int index) {
+        final var cached = values.get(index);
+        if (cached != null) {
+            return cached;
+        }
+        // racing threads parse the same text into equal values, the first one to finish is kept
+        final var parsed = source.parseAt(offsets[index]);
+        return values.compareAndSet(index, null, parsed) ? parsed : values.get(index);
+    }
+
+    @Override
+    public int size() {
+        return offsets.length;
+    }
+
+    // Parses every element in full, each independently of the others, so a parallel stream spreads them over threads.
+    Stream<JSONElement> parseAll() {
+        return IntStream.range(0, offsets.length).mapToObj(idx -> source.parseFullyAt(offsets[idx]));
+    }
+}
@@ -0,0 +1,77 @@
+package loadingbg.javason;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+// A read-only object whose keys were read up front and whose values are parsed on first access.
+final class LazyObjectMap extends AbstractMap<String, JSONElement> {
+    private final LazySource source;
+    private final Map<String, Integer> slots;
+    private final int[] offsets;
+    private final AtomicReferenceArray<JSONElement> values;
+
+    LazyObjectMap(final LazySource source, final Map<String, Integer> slots, final int[] offsets) {
+        this.source = source;
+        this.slots = slots;
+        this.offsets = offsets;
+        this.values = new AtomicReferenceArray<>(offsets.length);
+    }
+
+    @Override
+    public JSONElement get(final Object key) {
+        final var slot = slots.get(key);
+        return slot == null ? null : value(slot);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return slots.containsKey(key);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(slots.keySet());
+    }
+
+    @Override
+    public int size() {
+        return offsets.length;
+    }
+
+    @Override
+    public Set<Entry<String, JSONElement>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, JSONElement>> iterator() {
+                final var slotIterator = slots.entrySet().iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return slotIterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, JSONElement> next() {
+                        final var slot = slotIterator.next();
+                        return Map.entry(slot.getKey(), value(slot.getValue()));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return offsets.length;
+            }
+        };
+    }
+
+    private JSONElement value(final int slot) {
+        final var cached = values.get(slot);
+        if (cached != null) {
+            return cached;
+        }
+        // racing threads parse the same text into equal values, the first one to finish is kept
+        final var parsed = source.parseAt(offsets[slot]);
+        return values.compareAndSet(slot, null, parsed) ? parsed : values.get(slot);
+    }
+}
@@ -0,0 +1,10 @@
+package loadingbg.javason;
+
+// A document that was only skimmed: parses the values starting at offsets recorded by the skim.
+// Both methods throw JSONException when the value turns out to be malformed.
+interface LazySource {
+    // Containers in the value are skimmed in turn.
+    JSONElement parseAt(int offset);
+
+    JSONElement parseFullyAt(int offset);
+}
@@ -0,0 +1,334 @@
+package loadingbg.javason;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+// Newline-delimited JSON (JSON Lines): one value per line, blank lines are skipped.
+// The streams split their input on line boundaries, so they are decoded in parallel once parallel() is called
+// (on the common ForkJoinPool, or on whichever pool runs the terminal operation); unordered() drops the
+// encounter order for the operations that would otherwise have to keep it.
+public final class NDJSON {
+    // how many bytes an InputStream is read in at a time, rounded to whole lines
+    private static final int CHUNK_SIZE = 1 << 20;
+    // line ranges smaller than this aren't split any further
+    private static final int MIN_SPLIT_SIZE = 1 << 15;
+
+    private NDJSON() {}
+
+    public static Stream<JSONElement> parse(final Path file) throws IOException {
+        return stream(file, NDJSON::decode);
+    }
+
+    public static <T> Stream<T> parse(final Path file, final Class<T> type) throws IOException {
+        return stream(file, binding(type));
+    }
+
+    // The stream doesn't close the InputStream.
+    public static Stream<JSONElement> parse(final InputStream in) {
+        return StreamSupport.stream(new ChunkSpliterator<>(in, NDJSON::decode), false);
+    }
+
+    public static <T> Stream<T> parse(final InputStream in, final Class<T> type) {
+        return StreamSupport.stream(new ChunkSpliterator<>(in, binding(type)), false);
+    }
+
+    // Every value is written on its own line, values are serialized like JavaSON.write does.
+    public static void write(final Iterable<?> values, final Appendable out) throws IOException {
+        write(values.iterator(), out);
+    }
+
+    public static void write(final Stream<?> values, final Appendable out) throws IOException {
+        write(values.iterator(), out);
+    }
+
+    private static void write(final Iterator<?> values, final Appendable out) throws IOException {
+        final var writer = new JSONWriter(out);
+        var isEmpty = true;
+        while (values.hasNext()) {
+            writer.write(values.next());
+            isEmpty = false;
+        }
+        writer.flush();
+        if (!isEmpty) {
+            out.append('\n');
+        }
+    }
+
+    private static <T> Stream<T> stream(final Path file, final LineDecoder<T> decoder) throws IOException {
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final var size = channel.size();
+            if (size <= Integer.MAX_VALUE) {
+                final var bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                return StreamSupport.stream(new LineSpliterator<>(bytes, 0, decoder, 0, (int) size), false);
+            }
+        }
+        // too large to map at once, read it in chunks instead
+        final var in = Files.newInputStream(file);
+        return StreamSupport.stream(new ChunkSpliterator<>(in, decoder), false).onClose(() -> {
+            try {
+                in.close();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static JSONElement decode(final ByteBuffer line, final long offset, final LineBuffers buffers) {
+        final var parser = new ByteParser(line, 0, buffers.parser, JSONLimits.DEFAULT);
+        final var element = parser.parseValue();
+        if (element == null) {
+            throw new JSONException("Malformed JSON value", offset + parser.errorIndex());
+        }
+        for (var idx = parser.index(); idx < line.limit(); idx++) {
+            if (!ByteParser.isWhitespace(line.get(idx))) {
+                throw new JSONException("Unexpected data after the value", offset + idx);
+            }
+        }
+        return element;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> LineDecoder<T> binding(final Class<T> type) {
+        final var binder = Binder.of(type);
+        return (line, offset, buffers) -> {
+            try {
+                final var reader = buffers.reader(line);
+                final var value = binder.read(reader);
+                if (reader.peek() != JSONToken.END_DOCUMENT) {
+                    throw new JSONException("Unexpected data after the value", reader.position());
+                }
+                return (T) value;
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (final JSONException e) {
+                // the reader counts chars from the start of the line
+                final var located = new JSONException("Cannot bind the line starting", offset);
+                located.initCause(e);
+                throw located;
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface LineDecoder<T> {
+        // line holds just the line; offset is where it starts in the input, for error positions;
+        // buffers are shared by the lines one thread decodes
+        T decode(ByteBuffer line, long offset, LineBuffers buffers);
+    }
+
+    // What the lines one thread decodes reuse: the parser's buffers, or a reader that is reset to each line.
+    private static final class LineBuffers {
+        final ParserBuffers parser = new ParserBuffers(new KeyCache());
+        private final LineReader line = new LineReader();
+        private JSONReader reader;
+
+        JSONReader reader(final ByteBuffer bytes) {
+            line.reset(bytes);
+            return reader == null ? reader = new JSONReader(line) : reader.reset(line);
+        }
+    }
+
+    // Decodes the UTF-8 of a line straight into the JSONReader's buffer, malformed bytes become U+FFFD as they
+    // would with an InputStreamReader.
+    private static final class LineReader extends Reader {
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer bytes;
+        // wraps the last buffer read into, which is always the JSONReader's
+        private CharBuffer chars;
+        private boolean isFlushed;
+
+        void reset(final ByteBuffer bytes) {
+            this.bytes = bytes;
+            decoder.reset();
+            isFlushed = false;
+        }
+
+        @Override
+        public int read(final char[] buffer, final int offset, final int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (isFlushed) {
+                return -1;
+            }
+            if (chars == null || chars.array() != buffer) {
+                chars = CharBuffer.wrap(buffer);
+            }
+            chars.limit(offset + length).position(offset);
+            if (decoder.decode(bytes, chars, true).isUnderflow()) {
+                isFlushed = decoder.flush(chars).isUnderflow();
+            }
+            final var count = chars.position() - offset;
+            return count == 0 && isFlushed ? -1 : count;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    // The lines in bytes[start, end), which only ever splits between lines.
+    private static final class LineSpliterator<T> implements Spliterator<T> {
+        private final ByteBuffer bytes;
+        private final long offset;
+        private final LineDecoder<T> decoder;
+        private int start;
+        private final int end;
+        private final LineBuffers buffers = new LineBuffers();
+
+        LineSpliterator(final ByteBuffer bytes, final long offset, final LineDecoder<T> decoder, final int start, final int end) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.decoder = decoder;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            while (start < end) {
+                final var lineStart = start;
+                final var newline = indexOfNewline(start);
+                final var lineEnd = newline < 0 ? end : newline;
+                start = newline < 0 ? end : newline + 1;
+                if (!isBlank(lineStart, lineEnd)) {
+                    action.accept(decoder.decode(bytes.slice(lineStart, lineEnd - lineStart), offset + lineStart, buffers));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (end - start < MIN_SPLIT_SIZE) {
+                return null;
+            }
+            final var newline = indexOfNewline(start + (end - start) / 2);
+            if (newline < 0 || newline + 1 >= end) {
+                return null;
+            }
+            final var prefix = new LineSpliterator<>(bytes, offset, decoder, start, newline + 1);
+            start = newline + 1;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            // bytes rather than lines, but only the proportions between the halves of a split matter
+            return end - start;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+
+        private int indexOfNewline(final int from) {
+            for (var idx = from; idx < end; idx++) {
+                if (bytes.get(idx) == '\n') {
+                    return idx;
+                }
+            }
+            return -1;
+        }
+
+        private boolean isBlank(final int from, final int to) {
+            for (var idx = from; idx < to; idx++) {
+                if (!ByteParser.isWhitespace(bytes.get(idx))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Reads an InputStream a chunk of whole lines at a time; splitting hands the chunk read so far to another thread.
+    private static final class ChunkSpliterator<T> implements Spliterator<T> {
+        private final InputStream in;
+        private final LineDecoder<T> decoder;
+        private LineSpliterator<T> current;
+        // the start of a line that didn't fit in the previous chunk
+        private byte[] carry = new byte[0];
+        private long offset;
+        private boolean isEOF;
+
+        ChunkSpliterator(final InputStream in, final LineDecoder<T> decoder) {
+            this.in = in;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            while (true) {
+                if (current != null && current.tryAdvance(action)) {
+                    return true;
+                }
+                current = nextChunk();
+                if (current == null) {
+                    return false;
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            // what is left of the current chunk comes first, so it is the prefix to hand out
+            final var prefix = current != null ? current : nextChunk();
+            current = null;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+
+        private LineSpliterator<T> nextChunk() {
+            if (isEOF) {
+                return null;
+            }
+            try {
+                var buffer = Arrays.copyOf(carry, Math.max(CHUNK_SIZE, carry.length * 2));
+                var size = carry.length;
+                var lastNewline = -1;
+                while (true) {
+                    final var read = in.readNBytes(buffer, size, buffer.length - size);
+                    isEOF = size + read < buffer.length;
+                    for (var idx = size + read - 1; idx >= size; idx--) {
+                        if (buffer[idx] == '\n') {
+                            lastNewline = idx;
+                            break;
+                        }
+                    }
+                    size += read;
+                    if (lastNewline >= 0 || isEOF) {
+                        break;
+                    }
+                    // a line longer than the chunk
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+
+                final var chunkEnd = isEOF ? size : lastNewline + 1;
+                carry = Arrays.copyOfRange(buffer, chunkEnd, size);
+                final var chunk = new LineSpliterator<>(ByteBuffer.wrap(buffer), offset, decoder, 0, chunkEnd);
+                offset += chunkEnd;
+                return chunk;
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package loadingbg.javason;
+
+import java.math.*;
+
+final class NumberParser {
+    // powers of ten that are exact doubles
+    private static final double[] DOUBLE_POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long[] LONG_POWERS = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+        10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+        1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    // Every decimal with this many significant digits survives a round trip through a double.
+    static final int EXACT_DOUBLE_DIGITS = 15;
+    // The most significant digits that are accumulated into a long.
+    static final int MAX_SIGNIFICAND_DIGITS = 19;
+
+    private NumberParser() {}
+
+    // The scanner passes text[start, end) that already matches the JSON number grammar together with what it
+    // accumulated on the way: the first MAX_SIGNIFICAND_DIGITS significant digits, how many significant digits
+    // there were in total, the power of ten to scale the significand by, and whether the number had a fraction.
+    // The text is only looked at when the primitive fast paths can't represent the number exactly.
+    static JSONNumber toNumber(final CharSequence text, final int start, final int end, final boolean isNegative,
+                               final long significand, final int digits, final int exponent, final boolean hasFraction) {
+        final var isWhole = !hasFraction && exponent >= 0;
+        if (isWhole && digits + exponent <= 18) {
+            final var value = significand * LONG_POWERS[exponent];
+            return JSONNumber.of(isNegative ? -value : value);
+        }
+        if (isWhole && exponent == 0 && digits == MAX_SIGNIFICAND_DIGITS) {
+            // 19 digits always fit in an unsigned long
+            if (isNegative ? Long.compareUnsigned(significand, Long.MIN_VALUE) <= 0 : significand >= 0) {
+                return JSONNumber.of(isNegative ? -significand : significand);
+            }
+        }
+        if (!isWhole && digits <= EXACT_DOUBLE_DIGITS) {
+            // Clinger's fast path: both the significand and the power of ten are exact, so one operation rounds once
+            if (exponent >= -22 && exponent <= 22) {
+                final var value = exponent >= 0
+                    ? significand * DOUBLE_POWERS[exponent]
+                    : significand / DOUBLE_POWERS[-exponent];
+                return JSONNumber.of(isNegative ? -value : value);
+            }
+            final var value = Double.parseDouble(text.subSequence(start, end).toString());
+            // subnormals have fewer than 15 digits of precision
+            if (Double.isFinite(value) && (Math.abs(value) >= Double.MIN_NORMAL || significand == 0)) {
+                return JSONNumber.of(value);
+            }
+        }
+        return toBigNumber(text.subSequence(start, end).toString(), isWhole);
+    }
+
+    private static JSONNumber toBigNumber(final String number, final boolean isWhole) {
+        if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+            return toInteger(new BigInteger(number));
+        }
+
+        final var bigDecimal = new BigDecimal(number);
+        // An exponent on an integer ("1e3") still denotes an integer; only expand it while it fits in a long,
+        // so a huge exponent can't turn into a huge BigInteger.
+        if (isWhole) {
+            final var stripped = bigDecimal.stripTrailingZeros();
+            if (stripped.precision() - stripped.scale() <= 18) {
+                return toInteger(stripped.toBigIntegerExact());
+            }
+        }
+
+        final var doubleValue = bigDecimal.doubleValue();
+        if (Double.isFinite(doubleValue) && BigDecimal.valueOf(doubleValue).compareTo(bigDecimal) == 0) {
+            return JSONNumber.of(doubleValue);
+        }
+        return new JSONNumber(bigDecimal);
+    }
+
+    private static JSONNumber toInteger(final BigInteger bigInt) {
+        return bigInt.bitLength() > 63 ? new JSONNumber(bigInt) : JSONNumber.of(bigInt.longValue());
+    }
+}
@@ -0,0 +1,131 @@
+package loadingbg.javason;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+final class ObjectBinder implements Binder {
+    private static final ClassValue<ObjectBinder> BINDERS = new ClassValue<>() {
+        @Override
+        protected ObjectBinder computeValue(final Class<?> type) {
+            return new ObjectBinder(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final MethodHandle constructor;
+    private final Map<String, Integer> slots;
+    private final Binder[] binders;
+    private final Object[] defaults;
+
+    private ObjectBinder(final Class<?> type) {
+        this.type = type;
+        final Constructor<?> canonical;
+        final String[] keys;
+        final Type[] types;
+        if (type.isRecord()) {
+            final var components = type.getRecordComponents();
+            keys = new String[components.length];
+            types = new Type[components.length];
+            final var rawTypes = new Class<?>[components.length];
+            for (var idx = 0; idx < components.length; idx++) {
+                final var field = components[idx].getAnnotation(JSONField.class);
+                keys[idx] = field == null ? components[idx].getName() : field.value();
+                types[idx] = components[idx].getGenericType();
+                rawTypes[idx] = components[idx].getType();
+            }
+            try {
+                canonical = type.getDeclaredConstructor(rawTypes);
+            } catch (final NoSuchMethodException e) {
+                throw new IllegalArgumentException("Cannot find the canonical constructor of " + type, e);
+            }
+        } else {
+            canonical = annotatedConstructor(type);
+            final var parameters = canonical.getParameters();
+            keys = new String[parameters.length];
+            types = new Type[parameters.length];
+            for (var idx = 0; idx < parameters.length; idx++) {
+                keys[idx] = parameters[idx].getAnnotation(JSONField.class).value();
+                types[idx] = parameters[idx].getParameterizedType();
+            }
+        }
+
+        slots = HashMap.newHashMap(keys.length);
+        binders = new Binder[keys.length];
+        defaults = new Object[keys.length];
+        for (var idx = 0; idx < keys.length; idx++) {
+            slots.put(keys[idx], idx);
+            binders[idx] = Binder.of(types[idx]);
+            final var rawType = canonical.getParameterTypes()[idx];
+            if (rawType.isPrimitive()) {
+                defaults[idx] = Array.get(Array.newInstance(rawType, 1), 0);
+            }
+        }
+        constructor = unreflect(canonical)
+            .asSpreader(Object[].class, keys.length)
+            .asType(MethodType.methodType(Object.class, Object[].class));
+    }
+
+    static ObjectBinder of(final Class<?> type) {
+        return BINDERS.get(type);
+    }
+
+    @Override
+    public Object read(final JSONReader reader) throws IOException {
+        final var args = defaults.clone();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final var slot = slots.get(reader.nextName());
+            if (slot == null) {
+                reader.skipValue();
+            } else {
+                args[slot] = binders[slot].read(reader);
+            }
+        }
+        reader.endObject();
+
+        try {
+            return constructor.invokeExact(args);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new UndeclaredThrowableException(e, "Failed to construct " + type.getName());
+        }
+    }
+
+    private static Constructor<?> annotatedConstructor(final Class<?> type) {
+        Constructor<?> found = null;
+        for (final var constructor : type.getDeclaredConstructors()) {
+            if (constructor.getParameterCount() == 0 || Modifier.isPrivate(constructor.getModifiers())) {
+                continue;
+            }
+            if (Arrays.stream(constructor.getParameters()).allMatch(parameter -> parameter.isAnnotationPresent(JSONField.class))) {
+                if (found != null) {
+                    throw new IllegalArgumentException(type + " has more than one @JSONField constructor");
+                }
+                found = constructor;
+            }
+        }
+        if (found == null) {
+            throw new IllegalArgumentException("Cannot bind JSON to " + type
+                + ": it is neither a record nor has a constructor with @JSONField parameters");
+        }
+        return found;
+    }
+
+    private static MethodHandle unreflect(final Constructor<?> constructor) {
+        try {
+            // needs the declaring package to be open to this module (always true on the class path)
+            return MethodHandles.privateLookupIn(constructor.getDeclaringClass(), MethodHandles.lookup())
+                .unreflectConstructor(constructor);
+        } catch (final IllegalAccessException | SecurityException e) {
+            constructor.trySetAccessible();
+        }
+        try {
+            return MethodHandles.lookup().unreflectConstructor(constructor);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access the constructor of " + constructor.getDeclaringClass(), e);
+        }
+    }
+}
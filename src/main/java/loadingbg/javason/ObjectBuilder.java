@@ -0,0 +1,50 @@
+package loadingbg.javason;
+
+import java.util.*;
+
+// Collects parsed object members; objects whose keys were seen before in the document share their Shape.
+final class ObjectBuilder {
+    private final KeyCache cache;
+    private String[] keys = new String[8];
+    private JSONElement[] values = new JSONElement[8];
+    private int size;
+
+    ObjectBuilder(final KeyCache cache) {
+        this.cache = cache;
+    }
+
+    void put(final String key, final JSONElement value) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size++] = value;
+    }
+
+    JSONObject build() {
+        if (size > 0 && size <= Shape.MAX_KEYS) {
+            final var shape = cache.shape(keys, size);
+            if (shape != null) {
+                return new JSONObject(new ShapedMap(shape, Arrays.copyOf(values, size)));
+            }
+        }
+        // empty, too big, or with a repeated key, where the last value wins
+        final var valueMap = HashMap.<String, JSONElement>newHashMap(size);
+        for (var idx = 0; idx < size; idx++) {
+            valueMap.put(keys[idx], values[idx]);
+        }
+        return new JSONObject(Collections.unmodifiableMap(valueMap));
+    }
+
+    void reset() {
+        if (keys.length > ParserBuffers.MAX_RETAINED) {
+            keys = new String[8];
+            values = new JSONElement[8];
+        } else {
+            Arrays.fill(keys, 0, size, null);
+            Arrays.fill(values, 0, size, null);
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,90 @@
+package loadingbg.javason;
+
+import java.io.*;
+import java.util.*;
+import java.util.stream.*;
+
+// A read-only List<JSONElement> over primitive values; the JSONNumber views are created on access.
+abstract sealed class PackedNumberList extends AbstractList<JSONElement> implements RandomAccess
+    permits PackedNumberList.Longs, PackedNumberList.Doubles {
+
+    abstract LongStream longStream();
+
+    abstract DoubleStream doubleStream();
+
+    abstract void write(JSONWriter writer) throws IOException;
+
+    static final class Longs extends PackedNumberList {
+        private final long[] values;
+
+        Longs(final long[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public JSONElement get(final int index) {
+            return JSONNumber.of(values[index]);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        LongStream longStream() {
+            return Arrays.stream(values);
+        }
+
+        @Override
+        DoubleStream doubleStream() {
+            return Arrays.stream(values).asDoubleStream();
+        }
+
+        @Override
+        void write(final JSONWriter writer) throws IOException {
+            writer.beginArray();
+            for (final var value : values) {
+                writer.value(value);
+            }
+            writer.endArray();
+        }
+    }
+
+    static final class Doubles extends PackedNumberList {
+        private final double[] values;
+
+        Doubles(final double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public JSONElement get(final int index) {
+            return JSONNumber.of(values[index]);
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        LongStream longStream() {
+            return Arrays.stream(values).mapToLong(value -> (long) value);
+        }
+
+        @Override
+        DoubleStream doubleStream() {
+            return Arrays.stream(values);
+        }
+
+        @Override
+        void write(final JSONWriter writer) throws IOException {
+            writer.beginArray();
+            for (final var value : values) {
+                writer.value(value);
+            }
+            writer.endArray();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package loadingbg.javason;
+
+import java.util.*;
+
+// What StringParser and ByteParser need besides their input: the key cache, the stack of open containers with
+// a builder per depth, and the buffer for strings with escapes. A parser that gets its buffers from a JSONParser
+// reuses all of them from one document to the next.
+final class ParserBuffers {
+    // buffers that grew past this many elements aren't kept, so one huge document doesn't stay pinned in a pool
+    static final int MAX_RETAINED = 1 << 16;
+
+    // shared until the first container, which grows them
+    private static final Object[] NO_OPEN = {};
+    private static final String[] NO_KEYS = {};
+    private static final ArrayBuilder[] NO_ARRAYS = {};
+    private static final ObjectBuilder[] NO_OBJECTS = {};
+
+    final KeyCache keys;
+    // the open containers, innermost last, and the key each open object is waiting on a value for
+    Object[] open = NO_OPEN;
+    String[] pendingKeys = NO_KEYS;
+    private ArrayBuilder[] arrays = NO_ARRAYS;
+    private ObjectBuilder[] objects = NO_OBJECTS;
+    private StringBuilder text;
+
+    ParserBuffers(final KeyCache keys) {
+        this.keys = keys;
+    }
+
+    void grow() {
+        final var size = Math.max(16, open.length * 2);
+        open = Arrays.copyOf(open, size);
+        pendingKeys = Arrays.copyOf(pendingKeys, size);
+        arrays = Arrays.copyOf(arrays, size);
+        objects = Arrays.copyOf(objects, size);
+    }
+
+    // Parsers reset a builder as soon as it is built; it is reset again here in case a failed parse left it full.
+    ArrayBuilder array(final int depth) {
+        var builder = arrays[depth];
+        if (builder == null) {
+            builder = new ArrayBuilder();
+            arrays[depth] = builder;
+        } else {
+            builder.reset();
+        }
+        return builder;
+    }
+
+    ObjectBuilder object(final int depth) {
+        var builder = objects[depth];
+        if (builder == null) {
+            builder = new ObjectBuilder(keys);
+            objects[depth] = builder;
+        } else {
+            builder.reset();
+        }
+        return builder;
+    }
+
+    StringBuilder text() {
+        var text = this.text;
+        if (text == null) {
+            text = new StringBuilder(64);
+            this.text = text;
+        }
+        text.setLength(0);
+        return text;
+    }
+
+    // Called between documents. A parse that failed leaves its open containers behind, which would keep parts of
+    // the document reachable.
+    void recycle(final boolean failed) {
+        if (failed) {
+            for (var depth = 0; depth < open.length && open[depth] != null; depth++) {
+                open[depth] = null;
+                pendingKeys[depth] = null;
+                if (arrays[depth] != null) {
+                    arrays[depth].reset();
+                }
+                if (objects[depth] != null) {
+                    objects[depth].reset();
+                }
+            }
+        }
+        if (text != null && text.capacity() > MAX_RETAINED) {
+            text = null;
+        }
+    }
+}
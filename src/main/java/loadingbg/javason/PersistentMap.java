@@ -0,0 +1,242 @@
+package loadingbg.javason;
+
+import java.util.*;
+
+// An immutable map that with() and without() copy only a path of, sharing the rest with the map they were called
+// on. The entries sit in a PersistentVector in the order they were added, so objects keep their key order, and a
+// hash array mapped trie maps each key to its entry's index there. Removing an entry leaves a hole in the vector,
+// which is compacted away once the holes outnumber the entries.
+final class PersistentMap extends AbstractMap<String, JSONElement> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final PersistentMap EMPTY = new PersistentMap(PersistentVector.empty(), null, 0);
+
+    // null where an entry was removed
+    private final PersistentVector<Entry<String, JSONElement>> entries;
+    private final Node index;
+    private final int size;
+
+    private PersistentMap(final PersistentVector<Entry<String, JSONElement>> entries, final Node index, final int size) {
+        this.entries = entries;
+        this.index = index;
+        this.size = size;
+    }
+
+    static PersistentMap of(final Map<String, JSONElement> map) {
+        if (map instanceof PersistentMap persistent) {
+            return persistent;
+        }
+        var result = EMPTY;
+        for (final var entry : map.entrySet()) {
+            result = result.with(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public JSONElement get(final Object key) {
+        final var position = position(key);
+        return position < 0 ? null : entries.get(position).getValue();
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return position(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    PersistentMap with(final String key, final JSONElement value) {
+        final var entry = Map.entry(key, value);
+        final var position = position(key);
+        if (position >= 0) {
+            return entries.get(position).getValue() == value ? this : new PersistentMap(entries.with(position, entry), index, size);
+        }
+        final var newIndex = put(index, key.hashCode(), 0, key, entries.size());
+        return new PersistentMap(entries.append(entry), newIndex, size + 1);
+    }
+
+    PersistentMap without(final String key) {
+        final var position = position(key);
+        if (position < 0) {
+            return this;
+        }
+        if (size == 1) {
+            return EMPTY;
+        }
+        final var removed = new PersistentMap(entries.with(position, null), remove(index, key.hashCode(), 0, key), size - 1);
+        if (entries.size() - removed.size <= removed.size) {
+            return removed;
+        }
+        var compacted = EMPTY;
+        for (final var entry : removed.entrySet()) {
+            compacted = compacted.with(entry.getKey(), entry.getValue());
+        }
+        return compacted;
+    }
+
+    @Override
+    public Set<Entry<String, JSONElement>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, JSONElement>> iterator() {
+                return new Iterator<>() {
+                    private final Iterator<Entry<String, JSONElement>> iterator = entries.iterator();
+                    private Entry<String, JSONElement> next = advance();
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public Entry<String, JSONElement> next() {
+                        final var entry = next;
+                        if (entry == null) {
+                            throw new NoSuchElementException();
+                        }
+                        next = advance();
+                        return entry;
+                    }
+
+                    // skips the holes
+                    private Entry<String, JSONElement> advance() {
+                        while (iterator.hasNext()) {
+                            final var entry = iterator.next();
+                            if (entry != null) {
+                                return entry;
+                            }
+                        }
+                        return null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // the entry's index in the vector, or -1
+    private int position(final Object key) {
+        if (!(key instanceof String name)) {
+            return -1;
+        }
+        final var hash = name.hashCode();
+        var node = index;
+        var shift = 0;
+        while (node != null) {
+            final var array = node.array;
+            if (shift >= Integer.SIZE) {
+                for (var idx = 0; idx < array.length; idx += 2) {
+                    if (name.equals(array[idx])) {
+                        return (Integer) array[idx + 1];
+                    }
+                }
+                return -1;
+            }
+            final var bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return -1;
+            }
+            final var slot = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+            if (array[slot] == null) {
+                node = (Node) array[slot + 1];
+                shift += BITS;
+            } else {
+                return name.equals(array[slot]) ? (Integer) array[slot + 1] : -1;
+            }
+        }
+        return -1;
+    }
+
+    // Only called for keys that aren't in the trie yet.
+    private static Node put(final Node node, final int hash, final int shift, final String key, final int position) {
+        if (node == null) {
+            return shift >= Integer.SIZE
+                ? new Node(0, new Object[] { key, position })
+                : new Node(1 << ((hash >>> shift) & MASK), new Object[] { key, position });
+        }
+        final var array = node.array;
+        if (shift >= Integer.SIZE) {
+            // every bit of the hashes is the same, the keys are compared one by one
+            final var copy = Arrays.copyOf(array, array.length + 2);
+            copy[array.length] = key;
+            copy[array.length + 1] = position;
+            return new Node(0, copy);
+        }
+        final var bit = 1 << ((hash >>> shift) & MASK);
+        final var slot = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            final var copy = new Object[array.length + 2];
+            System.arraycopy(array, 0, copy, 0, slot);
+            copy[slot] = key;
+            copy[slot + 1] = position;
+            System.arraycopy(array, slot, copy, slot + 2, array.length - slot);
+            return new Node(node.bitmap | bit, copy);
+        }
+        final var copy = array.clone();
+        if (array[slot] == null) {
+            copy[slot + 1] = put((Node) array[slot + 1], hash, shift + BITS, key, position);
+        } else {
+            // the slot's key moves down into a new node next to this one
+            final var other = (String) array[slot];
+            final var child = put(put(null, other.hashCode(), shift + BITS, other, (Integer) array[slot + 1]), hash, shift + BITS, key, position);
+            copy[slot] = null;
+            copy[slot + 1] = child;
+        }
+        return new Node(node.bitmap, copy);
+    }
+
+    // Only called for keys that are in the trie; returns null for a node left empty.
+    private static Node remove(final Node node, final int hash, final int shift, final String key) {
+        final var array = node.array;
+        if (shift >= Integer.SIZE) {
+            if (array.length == 2) {
+                return null;
+            }
+            final var copy = new Object[array.length - 2];
+            for (int idx = 0, to = 0; idx < array.length; idx += 2) {
+                if (!key.equals(array[idx])) {
+                    copy[to++] = array[idx];
+                    copy[to++] = array[idx + 1];
+                }
+            }
+            return new Node(0, copy);
+        }
+        final var bit = 1 << ((hash >>> shift) & MASK);
+        final var slot = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+        if (array[slot] == null) {
+            final var child = remove((Node) array[slot + 1], hash, shift + BITS, key);
+            if (child != null && (child.array.length > 2 || child.array[0] == null)) {
+                final var copy = array.clone();
+                copy[slot + 1] = child;
+                return new Node(node.bitmap, copy);
+            }
+            if (child != null) {
+                // a single key left below, it moves up into this node
+                final var copy = array.clone();
+                copy[slot] = child.array[0];
+                copy[slot + 1] = child.array[1];
+                return new Node(node.bitmap, copy);
+            }
+        }
+        if (array.length == 2) {
+            return null;
+        }
+        final var copy = new Object[array.length - 2];
+        System.arraycopy(array, 0, copy, 0, slot);
+        System.arraycopy(array, slot + 2, copy, slot, array.length - slot - 2);
+        return new Node(node.bitmap & ~bit, copy);
+    }
+
+    // A node of the trie: bitmap has a bit set for each of the 32 slots, indexed by the next 5 bits of the hash,
+    // that is in use, and each slot takes two elements of the array, either a key and its position or null and a
+    // child node. Below the last bits of the hash the bitmap is 0 and the array holds keys and positions only.
+    private record Node(int bitmap, Object[] array) {}
+}
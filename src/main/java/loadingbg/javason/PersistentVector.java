@@ -0,0 +1,170 @@
+package loadingbg.javason;
+
+import java.util.*;
+
+// An immutable list that with() and append() copy only a path of, sharing the rest with the list they were called
+// on. The elements are the leaves of a trie with 32 children per node, except for the last up to 32, which sit in
+// a tail array so appending mostly copies just that.
+final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+    private final int size;
+    // how far the index is shifted for the root's children
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(final int size, final int shift, final Object[] root, final Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    // Builds the trie a leaf at a time rather than by appending each element.
+    @SuppressWarnings("unchecked")
+    static <E> PersistentVector<E> of(final List<? extends E> elements) {
+        if (elements instanceof PersistentVector<?> vector) {
+            return (PersistentVector<E>) vector;
+        }
+        final var array = elements.toArray();
+        PersistentVector<E> vector = empty();
+        for (var start = 0; start < array.length; start += WIDTH) {
+            vector = vector.appendLeaf(Arrays.copyOfRange(array, start, Math.min(start + WIDTH, array.length)));
+        }
+        return vector;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(final int index) {
+        Objects.checkIndex(index, size);
+        return (E) leaf(index)[index & MASK];
+    }
+
+    PersistentVector<E> with(final int index, final E element) {
+        Objects.checkIndex(index, size);
+        if (index >= tailOffset()) {
+            final var newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, set(shift, root, index, element), tail);
+    }
+
+    PersistentVector<E> append(final E element) {
+        if (size - tailOffset() < WIDTH) {
+            final var newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+        return pushTail(new Object[] { element }, 1);
+    }
+
+    // Only called while the tail is full or the vector is empty.
+    private PersistentVector<E> appendLeaf(final Object[] leaf) {
+        if (size == 0) {
+            return new PersistentVector<>(leaf.length, BITS, EMPTY_NODE, leaf);
+        }
+        return pushTail(leaf, leaf.length);
+    }
+
+    // moves the full tail into the trie and starts a new one
+    private PersistentVector<E> pushTail(final Object[] newTail, final int added) {
+        if ((size >>> BITS) > (1 << shift)) {
+            // the root is full, the trie gets another level
+            final var newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            return new PersistentVector<>(size + added, shift + BITS, newRoot, newTail);
+        }
+        return new PersistentVector<>(size + added, shift, pushTail(shift, root, tail), newTail);
+    }
+
+    private Object[] pushTail(final int level, final Object[] parent, final Object[] leaf) {
+        final var child = ((size - 1) >>> level) & MASK;
+        final var copy = parent.clone();
+        if (level == BITS) {
+            copy[child] = leaf;
+        } else {
+            final var node = (Object[]) parent[child];
+            copy[child] = node == null ? newPath(level - BITS, leaf) : pushTail(level - BITS, node, leaf);
+        }
+        return copy;
+    }
+
+    private static Object[] newPath(final int level, final Object[] leaf) {
+        if (level == 0) {
+            return leaf;
+        }
+        final var node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, leaf);
+        return node;
+    }
+
+    private static Object[] set(final int level, final Object[] node, final int index, final Object element) {
+        final var copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = element;
+        } else {
+            final var child = (index >>> level) & MASK;
+            copy[child] = set(level - BITS, (Object[]) node[child], index, element);
+        }
+        return copy;
+    }
+
+    private Object[] leaf(final int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        var node = root;
+        for (var level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    // walks a leaf at a time instead of descending the trie for every element
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private int index;
+            private Object[] leaf;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                if ((index & MASK) == 0 || leaf == null) {
+                    leaf = leaf(index);
+                }
+                return (E) leaf[index++ & MASK];
+            }
+        };
+    }
+}
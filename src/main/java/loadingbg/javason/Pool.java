@@ -0,0 +1,45 @@
+package loadingbg.javason;
+
+import java.util.concurrent.atomic.*;
+
+// A small lock-free pool of objects that are costly to set up and used by one thread at a time. Unlike a
+// ThreadLocal it doesn't keep one per thread, so any number of (virtual) threads share as many objects as are in
+// use at once. take() returns null when the pool is empty, and give() drops what doesn't fit.
+final class Pool<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+
+    Pool() {
+        // about two per core, as a power of two
+        final var size = Math.max(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    T take() {
+        final var start = start();
+        for (var idx = 0; idx <= mask; idx++) {
+            final var slot = (start + idx) & mask;
+            final var item = slots.get(slot);
+            if (item != null && slots.compareAndSet(slot, item, null)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    void give(final T item) {
+        final var start = start();
+        for (var idx = 0; idx <= mask; idx++) {
+            final var slot = (start + idx) & mask;
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, item)) {
+                return;
+            }
+        }
+    }
+
+    // threads start looking in different places, so they rarely contend for a slot
+    private int start() {
+        return (int) (Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L >>> 40);
+    }
+}
@@ -0,0 +1,86 @@
+package loadingbg.javason;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+final class SerializerPlan {
+    private static final ClassValue<SerializerPlan> PLANS = new ClassValue<>() {
+        @Override
+        protected SerializerPlan computeValue(final Class<?> type) {
+            return new SerializerPlan(type);
+        }
+    };
+
+    private final String[] keys;
+    private final FieldAccessor[] accessors;
+
+    private SerializerPlan(final Class<?> type) {
+        final var members = new ArrayList<Map.Entry<String, Method>>();
+        final var componentAccessors = new HashSet<Method>();
+        if (type.isRecord()) {
+            // every component is written, under its name unless it has @JSONField, the way ObjectBinder reads it
+            for (final var component : type.getRecordComponents()) {
+                final var field = component.getAnnotation(JSONField.class);
+                members.add(Map.entry(field == null ? component.getName() : field.value(), component.getAccessor()));
+                componentAccessors.add(component.getAccessor());
+            }
+        }
+        for (final var method : type.getDeclaredMethods()) {
+            final var field = method.getAnnotation(JSONField.class);
+            if (field == null || Modifier.isPrivate(method.getModifiers()) || componentAccessors.contains(method)) {
+                continue;
+            }
+            members.add(Map.entry(field.value(), method));
+        }
+
+        // methods that share a key cancel each other out
+        final var seenKeys = new HashMap<String, Integer>();
+        for (final var member : members) {
+            seenKeys.merge(member.getKey(), 1, Integer::sum);
+        }
+        members.removeIf(member -> seenKeys.get(member.getKey()) != 1);
+        keys = new String[members.size()];
+        accessors = new FieldAccessor[members.size()];
+        for (var idx = 0; idx < keys.length; idx++) {
+            keys[idx] = members.get(idx).getKey();
+            accessors[idx] = FieldAccessor.of(members.get(idx).getValue());
+        }
+    }
+
+    static SerializerPlan of(final Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    JSONObject toJSON(final Object obj) {
+        final var valueMap = HashMap.<String, JSONElement>newHashMap(keys.length);
+        for (var idx = 0; idx < keys.length; idx++) {
+            valueMap.put(keys[idx], toJSON(accessors[idx], obj));
+        }
+        return new JSONObject(valueMap);
+    }
+
+    void write(final Object obj, final JSONWriter writer) throws IOException {
+        writer.beginObject();
+        for (var idx = 0; idx < keys.length; idx++) {
+            writer.name(keys[idx]);
+            if (accessors[idx] == null) {
+                writer.nullValue();
+            } else {
+                accessors[idx].write(obj, writer);
+            }
+        }
+        writer.endObject();
+    }
+
+    private static JSONElement toJSON(final FieldAccessor accessor, final Object obj) {
+        if (accessor == null) {
+            return JSONNull.INSTANCE;
+        }
+        try {
+            return accessor.toJSON(obj);
+        } catch (final Exception e) {
+            return JSONNull.INSTANCE;
+        }
+    }
+}
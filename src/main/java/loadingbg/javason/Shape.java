@@ -0,0 +1,56 @@
+package loadingbg.javason;
+
+import java.util.*;
+
+// The keys of an object, in order, with a key -> slot index; objects that have the same keys share one Shape
+// and hold nothing but their values.
+final class Shape {
+    // objects with more keys than this are rarely repeated, and a HashMap is not much bigger than a shape for them
+    static final int MAX_KEYS = 64;
+
+    private final String[] keys;
+    private final Map<String, Integer> slots;
+
+    private Shape(final String[] keys, final Map<String, Integer> slots) {
+        this.keys = keys;
+        this.slots = slots;
+    }
+
+    // Returns null when a key repeats, since an object only keeps the last of them.
+    static Shape of(final String[] keys) {
+        final var slots = HashMap.<String, Integer>newHashMap(keys.length);
+        for (var idx = 0; idx < keys.length; idx++) {
+            if (slots.putIfAbsent(keys[idx], idx) != null) {
+                return null;
+            }
+        }
+        return new Shape(keys, slots);
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    String key(final int slot) {
+        return keys[slot];
+    }
+
+    // -1 if the key isn't there
+    int slot(final Object key) {
+        final var slot = slots.get(key);
+        return slot == null ? -1 : slot;
+    }
+
+    boolean matches(final String[] keys, final int count) {
+        if (this.keys.length != count) {
+            return false;
+        }
+        for (var idx = 0; idx < count; idx++) {
+            // keys are usually interned by the KeyCache too, so this is mostly a reference comparison
+            if (!this.keys[idx].equals(keys[idx])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
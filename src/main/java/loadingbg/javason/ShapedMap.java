@@ -0,0 +1,72 @@
+package loadingbg.javason;
+
+import java.io.*;
+import java.util.*;
+
+// A read-only object that keeps its values in an array, in the order of the keys of its Shape.
+final class ShapedMap extends AbstractMap<String, JSONElement> {
+    private final Shape shape;
+    private final JSONElement[] values;
+
+    ShapedMap(final Shape shape, final JSONElement[] values) {
+        this.shape = shape;
+        this.values = values;
+    }
+
+    @Override
+    public JSONElement get(final Object key) {
+        final var slot = shape.slot(key);
+        return slot < 0 ? null : values[slot];
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return shape.slot(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public Set<Entry<String, JSONElement>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, JSONElement>> iterator() {
+                return new Iterator<>() {
+                    private int slot;
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < values.length;
+                    }
+
+                    @Override
+                    public Entry<String, JSONElement> next() {
+                        if (slot >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        final var entry = Map.entry(shape.key(slot), values[slot]);
+                        slot++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+
+    void write(final JSONWriter writer) throws IOException {
+        writer.beginObject();
+        for (var slot = 0; slot < values.length; slot++) {
+            writer.name(shape.key(slot));
+            writer.value(values[slot]);
+        }
+        writer.endObject();
+    }
+}
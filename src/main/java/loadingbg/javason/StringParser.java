@@ -0,0 +1,521 @@
+package loadingbg.javason;
+
+import java.util.*;
+
+final class StringParser {
+    private final String json;
+    private final int length;
+    private int index;
+    private int errorIndex = -1;
+    // set when containers are only skimmed and their values parsed on access
+    private final LazySource lazySource;
+    private final ParserBuffers buffers;
+    private final KeyCache keys;
+    private final JSONLimits limits;
+
+    StringParser(final String json, final int index) {
+        this(json, index, JSONLimits.DEFAULT);
+    }
+
+    StringParser(final String json, final int index, final JSONLimits limits) {
+        this(json, index, new ParserBuffers(new KeyCache()), limits);
+    }
+
+    StringParser(final String json, final int index, final ParserBuffers buffers, final JSONLimits limits) {
+        this(json, index, null, buffers, limits);
+        checkDocumentSize();
+    }
+
+    private StringParser(final String json, final int index, final LazySource lazySource, final ParserBuffers buffers,
+                         final JSONLimits limits) {
+        this.json = json;
+        this.length = json.length();
+        this.index = index;
+        this.lazySource = lazySource;
+        this.buffers = buffers;
+        this.keys = buffers.keys;
+        this.limits = limits;
+    }
+
+    static StringParser lazy(final String json, final int index, final JSONLimits limits) {
+        final var keys = new KeyCache();
+        final var parser = new StringParser(json, index, new LazyString(json, keys, limits), new ParserBuffers(keys), limits);
+        parser.checkDocumentSize();
+        return parser;
+    }
+
+    private void checkDocumentSize() {
+        if (length - index > limits.maxDocumentSize()) {
+            throw limits.documentSizeExceeded(index + limits.maxDocumentSize());
+        }
+    }
+
+    // the key cache is shared by every value parsed out of the document
+    private record LazyString(String json, KeyCache keys, JSONLimits limits) implements LazySource {
+        @Override
+        public JSONElement parseAt(final int offset) {
+            return parse(new StringParser(json, offset, this, new ParserBuffers(keys), limits));
+        }
+
+        @Override
+        public JSONElement parseFullyAt(final int offset) {
+            return parse(new StringParser(json, offset, null, new ParserBuffers(keys), limits));
+        }
+
+        private static JSONElement parse(final StringParser parser) {
+            final var element = parser.parseValue();
+            if (element == null) {
+                throw new JSONException("Malformed JSON value", parser.errorIndex());
+            }
+            return element;
+        }
+    }
+
+    int index() {
+        return index;
+    }
+
+    int errorIndex() {
+        return errorIndex;
+    }
+
+    // Returns null on failure, leaving the offending position in errorIndex.
+    // Containers are kept on an explicit stack instead of the call stack, so nesting is bounded by
+    // limits.maxDepth() rather than by the thread's stack size.
+    JSONElement parseValue() {
+        var builders = buffers.open;
+        var pendingKeys = buffers.pendingKeys;
+        var depth = 0;
+        while (true) {
+            skipWhitespace();
+            if (index >= length) {
+                return fail(index);
+            }
+            final var currChar = json.charAt(index);
+            JSONElement value;
+            if ((currChar == '[' || currChar == '{') && lazySource == null) {
+                if (depth == limits.maxDepth()) {
+                    throw limits.depthExceeded(index);
+                }
+                index++;
+                skipWhitespace();
+                final var isArray = currChar == '[';
+                if (index < length && json.charAt(index) == (isArray ? ']' : '}')) {
+                    index++;
+                    value = isArray ? new JSONArray(Collections.emptyList()) : new JSONObject(Collections.emptyMap());
+                } else {
+                    if (depth == builders.length) {
+                        buffers.grow();
+                        builders = buffers.open;
+                        pendingKeys = buffers.pendingKeys;
+                    }
+                    builders[depth] = isArray ? buffers.array(depth) : buffers.object(depth);
+                    if (!isArray && (pendingKeys[depth] = parseKey()) == null) {
+                        return null;
+                    }
+                    depth++;
+                    continue;
+                }
+            } else {
+                value = switch (currChar) {
+                    case 'n' -> parseLiteral("null", JSONNull.INSTANCE);
+                    case 't' -> parseLiteral("true", new JSONBoolean(true));
+                    case 'f' -> parseLiteral("false", new JSONBoolean(false));
+                    case '"' -> parseString();
+                    case '[' -> parseLazyArray();
+                    case '{' -> parseLazyObject();
+                    default -> parseNumber();
+                };
+                if (value == null) {
+                    return null;
+                }
+            }
+
+            // hand the value to its container, then close every container that ends right after it
+            while (depth > 0) {
+                final var builder = builders[depth - 1];
+                if (builder instanceof ArrayBuilder array) {
+                    array.add(value);
+                } else {
+                    ((ObjectBuilder) builder).put(pendingKeys[depth - 1], value);
+                }
+
+                skipWhitespace();
+                if (index >= length) {
+                    return fail(index);
+                }
+                final var separator = json.charAt(index++);
+                if (separator == ',') {
+                    if (builder instanceof ObjectBuilder && (pendingKeys[depth - 1] = parseKey()) == null) {
+                        return null;
+                    }
+                    break;
+                }
+                if (builder instanceof ArrayBuilder array && separator == ']') {
+                    value = array.build();
+                    array.reset();
+                } else if (builder instanceof ObjectBuilder object && separator == '}') {
+                    value = object.build();
+                    object.reset();
+                } else {
+                    return fail(index - 1);
+                }
+                builders[--depth] = null;
+            }
+            if (depth == 0) {
+                return value;
+            }
+        }
+    }
+
+    // Reads an object key and the colon after it.
+    private String parseKey() {
+        skipWhitespace();
+        final var key = parseText(true);
+        if (key == null) {
+            return null;
+        }
+        skipWhitespace();
+        if (index >= length || json.charAt(index) != ':') {
+            return fail(index);
+        }
+        index++;
+        return key;
+    }
+
+    private JSONElement parseLiteral(final String literal, final JSONElement value) {
+        if (!json.startsWith(literal, index)) {
+            return fail(index);
+        }
+        index += literal.length();
+        return value;
+    }
+
+    private JSONNumber parseNumber() {
+        final var start = index;
+        var idx = index;
+        final var isNegative = idx < length && json.charAt(idx) == '-';
+        if (isNegative) {
+            idx++;
+        }
+
+        var significand = 0L;
+        var digits = 0;
+        var exponent = 0;
+        final var wholeStart = idx;
+        if (idx < length && json.charAt(idx) == '0') {
+            idx++;
+        } else {
+            while (idx < length && isDigit(json.charAt(idx))) {
+                if (digits < NumberParser.MAX_SIGNIFICAND_DIGITS) {
+                    significand = significand * 10 + (json.charAt(idx) - '0');
+                } else {
+                    exponent++;
+                }
+                digits++;
+                idx++;
+            }
+        }
+        if (idx == wholeStart) {
+            return fail(idx);
+        }
+
+        var hasFraction = false;
+        if (idx < length && json.charAt(idx) == '.') {
+            idx++;
+            final var fracStart = idx;
+            while (idx < length && isDigit(json.charAt(idx))) {
+                final var digit = json.charAt(idx) - '0';
+                if (digits < NumberParser.MAX_SIGNIFICAND_DIGITS) {
+                    // leading zeros only move the exponent
+                    if (digits > 0 || digit != 0) {
+                        significand = significand * 10 + digit;
+                        digits++;
+                    }
+                    exponent--;
+                } else {
+                    digits++;
+                }
+                idx++;
+            }
+            if (idx == fracStart) {
+                return fail(idx);
+            }
+            hasFraction = true;
+        }
+
+        if (idx < length && (json.charAt(idx) == 'e' || json.charAt(idx) == 'E')) {
+            idx++;
+            var isNegativeExponent = false;
+            if (idx < length && (json.charAt(idx) == '-' || json.charAt(idx) == '+')) {
+                isNegativeExponent = json.charAt(idx) == '-';
+                idx++;
+            }
+            final var expStart = idx;
+            var explicitExponent = 0;
+            while (idx < length && isDigit(json.charAt(idx))) {
+                // saturate, the exact value only matters to BigDecimal
+                explicitExponent = Math.min(explicitExponent * 10 + (json.charAt(idx) - '0'), 1_000_000);
+                idx++;
+            }
+            if (idx == expStart) {
+                return fail(idx);
+            }
+            exponent += isNegativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (idx - start > limits.maxNumberLength()) {
+            throw limits.numberLengthExceeded(start);
+        }
+        index = idx;
+        try {
+            return NumberParser.toNumber(json, start, idx, isNegative, significand, digits, exponent, hasFraction);
+        } catch (final NumberFormatException e) {
+            // exponent doesn't fit in an int
+            return fail(start);
+        }
+    }
+
+    JSONString parseString() {
+        final var text = parseText(false);
+        return text == null ? null : new JSONString(text);
+    }
+
+    // Keys without escapes go through the key cache.
+    private String parseText(final boolean isKey) {
+        if (index >= length || json.charAt(index) != '"') {
+            return fail(index);
+        }
+
+        final var start = index + 1;
+        // the closing quote of a string within the limit comes before this
+        final var end = (int) Math.min(length, start + (long) limits.maxStringLength() + 1);
+        var idx = start;
+        while (idx < end) {
+            final var currChar = json.charAt(idx);
+            if (currChar == '"') {
+                index = idx + 1;
+                return isKey ? keys.intern(json, start, idx) : json.substring(start, idx);
+            }
+            if (currChar == '\\') {
+                break;
+            }
+            idx++;
+        }
+        if (idx == end && end < length) {
+            throw limits.stringLengthExceeded(start - 1);
+        }
+
+        final var valueBuilder = buffers.text().append(json, start, idx);
+        while (idx < end) {
+            final var currChar = json.charAt(idx);
+            if (currChar == '"') {
+                index = idx + 1;
+                return valueBuilder.toString();
+            } else if (currChar == '\\') {
+                if (idx + 1 >= length) {
+                    return fail(idx);
+                }
+                final var escaped = json.charAt(idx + 1);
+                switch (escaped) {
+                    case '"', '\'', '/', '\\' -> valueBuilder.append(escaped);
+                    case 'b' -> valueBuilder.append('\b');
+                    case 'f' -> valueBuilder.append('\f');
+                    case 'n' -> valueBuilder.append('\n');
+                    case 'r' -> valueBuilder.append('\r');
+                    case 't' -> valueBuilder.append('\t');
+                    case 'u' -> {
+                        if (idx + 5 >= length) {
+                            return fail(idx);
+                        }
+                        // hexIdx is relative to the backslash
+                        var unicodeValue = 0;
+                        for (var hexIdx = 2; hexIdx < 6; hexIdx++) {
+                            final var hexValue = hexValue(json.charAt(idx + hexIdx));
+                            if (hexValue < 0) {
+                                return fail(idx + hexIdx);
+                            }
+                            unicodeValue = (unicodeValue << 4) | hexValue;
+                        }
+                        valueBuilder.append((char) unicodeValue);
+                        idx += 4;
+                    }
+                    default -> {
+                        return fail(idx);
+                    }
+                }
+                idx += 2;
+            } else {
+                valueBuilder.append(currChar);
+                idx++;
+            }
+        }
+        if (idx < length) {
+            throw limits.stringLengthExceeded(start - 1);
+        }
+        return fail(idx);
+    }
+
+    private JSONArray parseLazyArray() {
+        index++;
+        var offsets = new int[16];
+        var size = 0;
+        skipWhitespace();
+        if (index < length && json.charAt(index) == ']') {
+            index++;
+            return new JSONArray(Collections.emptyList());
+        }
+
+        while (true) {
+            skipWhitespace();
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = index;
+            if (!skipValue()) {
+                return null;
+            }
+
+            skipWhitespace();
+            if (index >= length) {
+                return fail(index);
+            }
+            final var separator = json.charAt(index++);
+            if (separator == ']') {
+                return new JSONArray(new LazyArrayList(lazySource, Arrays.copyOf(offsets, size)));
+            }
+            if (separator != ',') {
+                return fail(index - 1);
+            }
+        }
+    }
+
+    private JSONObject parseLazyObject() {
+        index++;
+        final var slots = new HashMap<String, Integer>();
+        var offsets = new int[16];
+        skipWhitespace();
+        if (index < length && json.charAt(index) == '}') {
+            index++;
+            return new JSONObject(Collections.emptyMap());
+        }
+
+        while (true) {
+            final var currKey = parseKey();
+            if (currKey == null) {
+                return null;
+            }
+
+            skipWhitespace();
+            // the last value of a repeated key wins, as in ObjectBuilder
+            final var slot = slots.computeIfAbsent(currKey, key -> slots.size());
+            if (slot == offsets.length) {
+                offsets = Arrays.copyOf(offsets, slot * 2);
+            }
+            offsets[slot] = index;
+            if (!skipValue()) {
+                return null;
+            }
+
+            skipWhitespace();
+            if (index >= length) {
+                return fail(index);
+            }
+            final var separator = json.charAt(index++);
+            if (separator == '}') {
+                return new JSONObject(new LazyObjectMap(lazySource, slots, Arrays.copyOf(offsets, slots.size())));
+            }
+            if (separator != ',') {
+                return fail(index - 1);
+            }
+        }
+    }
+
+    // Moves past one value by matching up brackets and strings only; what is inside is checked once it is parsed.
+    private boolean skipValue() {
+        final var start = index;
+        var depth = 0;
+        while (index < length) {
+            final var currChar = json.charAt(index);
+            if (currChar == '"') {
+                if (!skipString()) {
+                    return false;
+                }
+                if (depth == 0) {
+                    return true;
+                }
+                continue;
+            }
+            if (currChar == '[' || currChar == '{') {
+                // the container being skimmed is one level deeper than the value's own
+                if (++depth >= limits.maxDepth()) {
+                    throw limits.depthExceeded(index);
+                }
+            } else if (currChar == ']' || currChar == '}') {
+                if (depth == 0) {
+                    // closes the enclosing container
+                    break;
+                }
+                if (--depth == 0) {
+                    index++;
+                    return true;
+                }
+            } else if (depth == 0 && (currChar == ',' || isWhitespace(currChar))) {
+                break;
+            }
+            index++;
+        }
+        if (depth == 0 && index > start) {
+            return true;
+        }
+        errorIndex = index;
+        return false;
+    }
+
+    private boolean skipString() {
+        var quote = json.indexOf('"', index + 1);
+        while (quote >= 0) {
+            // the quote is escaped when an odd number of backslashes precede it
+            var backslashes = 0;
+            while (json.charAt(quote - 1 - backslashes) == '\\') {
+                backslashes++;
+            }
+            if (backslashes % 2 == 0) {
+                index = quote + 1;
+                return true;
+            }
+            quote = json.indexOf('"', quote + 1);
+        }
+        errorIndex = index;
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (index < length && isWhitespace(json.charAt(index))) {
+            index++;
+        }
+    }
+
+    private <T> T fail(final int at) {
+        errorIndex = at;
+        return null;
+    }
+
+    // Same set of characters String.stripLeading() skips.
+    static boolean isWhitespace(final char c) {
+        return c <= ' ' ? c == ' ' || Character.isWhitespace(c) : c >= '\u1680' && Character.isWhitespace(c);
+    }
+
+    static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    static int hexValue(final char c) {
+        return switch (c) {
+            case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> c - '0';
+            case 'A', 'B', 'C', 'D', 'E', 'F' -> c - 'A' + 10;
+            case 'a', 'b', 'c', 'd', 'e', 'f' -> c - 'a' + 10;
+            default -> -1;
+        };
+    }
+}
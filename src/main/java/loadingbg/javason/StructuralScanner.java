@@ -0,0 +1,76 @@
+package loadingbg.javason;
+
+import java.nio.*;
+
+// The long scans ByteParser does without looking at what it passes: through string bodies and over skipped containers.
+interface StructuralScanner {
+    // Uses jdk.incubator.vector when it was added to the boot layer (--add-modules jdk.incubator.vector) and the
+    // hardware has at least 128-bit vectors; -Dloadingbg.javason.vector=false forces the scalar scanner.
+    StructuralScanner INSTANCE = select();
+
+    // Index of the first '"', '\\' or non-ASCII byte in bytes[from, limit), or limit if there is none.
+    int scanString(ByteBuffer bytes, int from, int limit);
+
+    // Index after the bracket that closes the container opening at start, or -1 if the input ends first, or
+    // -2 - i if the bracket at i opens a container nested more than maxDepth deep (the one at start being 1 deep).
+    // Only nesting depth is tracked, so "[}" counts as closed; ByteParser checks the contents once they are parsed.
+    int skipContainer(ByteBuffer bytes, int start, int limit, int maxDepth);
+
+    private static StructuralScanner select() {
+        if (!Boolean.parseBoolean(System.getProperty("loadingbg.javason.vector", "true"))) {
+            return new Scalar();
+        }
+        final var vectorModule = ModuleLayer.boot().findModule("jdk.incubator.vector");
+        if (vectorModule.isEmpty()) {
+            return new Scalar();
+        }
+        // a static requirement isn't read unless something else resolved the module
+        StructuralScanner.class.getModule().addReads(vectorModule.get());
+        try {
+            return VectorScanner.isSupported() ? new VectorScanner() : new Scalar();
+        } catch (final LinkageError e) {
+            return new Scalar();
+        }
+    }
+
+    final class Scalar implements StructuralScanner {
+        @Override
+        public int scanString(final ByteBuffer bytes, final int from, final int limit) {
+            var idx = from;
+            while (idx < limit) {
+                final var currByte = bytes.get(idx);
+                if (currByte == '"' || currByte == '\\' || currByte < 0) {
+                    return idx;
+                }
+                idx++;
+            }
+            return limit;
+        }
+
+        @Override
+        public int skipContainer(final ByteBuffer bytes, final int start, final int limit, final int maxDepth) {
+            var depth = 0;
+            var inString = false;
+            var idx = start;
+            while (idx < limit) {
+                final var currByte = bytes.get(idx++);
+                if (inString) {
+                    if (currByte == '\\') {
+                        idx++;
+                    } else if (currByte == '"') {
+                        inString = false;
+                    }
+                } else if (currByte == '"') {
+                    inString = true;
+                } else if (currByte == '[' || currByte == '{') {
+                    if (++depth > maxDepth) {
+                        return -1 - idx;
+                    }
+                } else if ((currByte == ']' || currByte == '}') && --depth == 0) {
+                    return idx;
+                }
+            }
+            return -1;
+        }
+    }
+}
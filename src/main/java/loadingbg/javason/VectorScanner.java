@@ -0,0 +1,117 @@
+package loadingbg.javason;
+
+import java.nio.*;
+import java.util.*;
+import jdk.incubator.vector.*;
+
+// Classifies 64 bytes at a time into bitmasks, one bit per byte, in the manner of simdjson's first stage.
+// Only loaded once StructuralScanner has checked that jdk.incubator.vector is present.
+final class VectorScanner implements StructuralScanner {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int BLOCK = 64;
+    private static final long EVEN_BITS = 0x5555_5555_5555_5555L;
+
+    static boolean isSupported() {
+        return SPECIES.length() >= 16 && SPECIES.length() <= BLOCK;
+    }
+
+    @Override
+    public int scanString(final ByteBuffer bytes, final int from, final int limit) {
+        var idx = from;
+        if (bytes.hasArray()) {
+            final var array = bytes.array();
+            final var offset = bytes.arrayOffset();
+            for (; idx + SPECIES.length() <= limit; idx += SPECIES.length()) {
+                final var vector = ByteVector.fromArray(SPECIES, array, offset + idx);
+                final var stop = vector.eq((byte) '"').or(vector.eq((byte) '\\')).or(vector.lt((byte) 0));
+                if (stop.anyTrue()) {
+                    return idx + stop.firstTrue();
+                }
+            }
+        }
+        // the tail, and direct buffers, where short strings dominate and a copy would cost more than it saves
+        while (idx < limit) {
+            final var currByte = bytes.get(idx);
+            if (currByte == '"' || currByte == '\\' || currByte < 0) {
+                return idx;
+            }
+            idx++;
+        }
+        return limit;
+    }
+
+    @Override
+    public int skipContainer(final ByteBuffer bytes, final int start, final int limit, final int maxDepth) {
+        // holds the current block when it can't be read straight out of a heap buffer's array
+        final var block = new byte[BLOCK];
+        final var array = bytes.hasArray() ? bytes.array() : null;
+        final var offset = bytes.hasArray() ? bytes.arrayOffset() : 0;
+        var depth = 0;
+        // whether the first byte of the next block is escaped, and whether it starts inside a string (0 or -1)
+        var prevEscaped = 0L;
+        var prevInString = 0L;
+        for (var pos = start; pos < limit; pos += BLOCK) {
+            final var length = Math.min(BLOCK, limit - pos);
+            final byte[] source;
+            final int sourceOffset;
+            if (array != null && length == BLOCK) {
+                source = array;
+                sourceOffset = offset + pos;
+            } else {
+                // zero padding matches none of the characters looked for
+                bytes.get(pos, block, 0, length);
+                Arrays.fill(block, length, BLOCK, (byte) 0);
+                source = block;
+                sourceOffset = 0;
+            }
+
+            var quotes = 0L;
+            var backslashes = 0L;
+            var opens = 0L;
+            var closes = 0L;
+            for (var lane = 0; lane < BLOCK; lane += SPECIES.length()) {
+                final var vector = ByteVector.fromArray(SPECIES, source, sourceOffset + lane);
+                quotes |= vector.eq((byte) '"').toLong() << lane;
+                backslashes |= vector.eq((byte) '\\').toLong() << lane;
+                opens |= vector.eq((byte) '[').or(vector.eq((byte) '{')).toLong() << lane;
+                closes |= vector.eq((byte) ']').or(vector.eq((byte) '}')).toLong() << lane;
+            }
+
+            // a byte is escaped when it follows an odd-length run of backslashes
+            backslashes &= ~prevEscaped;
+            final var followsEscape = backslashes << 1 | prevEscaped;
+            final var oddSequenceStarts = backslashes & ~EVEN_BITS & ~followsEscape;
+            final var sequencesStartingOnEvenBits = oddSequenceStarts + backslashes;
+            prevEscaped = Long.compareUnsigned(sequencesStartingOnEvenBits, backslashes) < 0 ? 1 : 0;
+            final var escaped = (EVEN_BITS ^ sequencesStartingOnEvenBits << 1) & followsEscape;
+
+            // every unescaped quote toggles whether the bytes after it are inside a string
+            final var inString = prefixXor(quotes & ~escaped) ^ prevInString;
+            prevInString = inString >> 63;
+
+            var structurals = (opens | closes) & ~inString;
+            while (structurals != 0) {
+                final var bit = Long.numberOfTrailingZeros(structurals);
+                if ((opens >>> bit & 1) != 0) {
+                    if (++depth > maxDepth) {
+                        return -2 - (pos + bit);
+                    }
+                } else if (--depth == 0) {
+                    return pos + bit + 1;
+                }
+                structurals &= structurals - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static long prefixXor(long bits) {
+        bits ^= bits << 1;
+        bits ^= bits << 2;
+        bits ^= bits << 4;
+        bits ^= bits << 8;
+        bits ^= bits << 16;
+        bits ^= bits << 32;
+        return bits;
+    }
+}
@@ -1,3 +1,9 @@
 module loadingbg.javason {
+    requires static jdk.incubator.vector;
+
     exports loadingbg.javason;
+
+    // A uses directive can't name a parameterized type, so -Xlint:rawtypes warns about the generic service type
+    // here; javac doesn't apply @SuppressWarnings on the module declaration to it, so the warning is expected.
+    uses loadingbg.javason.JSONCodec;
 }
\ No newline at end of file